@@ -4,6 +4,8 @@ package Main;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.security.MessageDigest;
 
@@ -83,18 +85,13 @@ public class AccountDAO {
     }
 
     private static void ensurePasswordHashColumnExists(Connection c) {
-        try {
-            DatabaseMetaData meta = c.getMetaData();
-            // Use catalog from connection (may be null depending on driver)
-            String catalog = c.getCatalog();
-            try (ResultSet cols = meta.getColumns(catalog, null, "accounts", "password_hash")) {
-                if (!cols.next()) {
-                    try (Statement s = c.createStatement()) {
-                        s.execute("ALTER TABLE accounts ADD COLUMN password_hash TEXT");
-                        System.out.println("Added missing column password_hash to accounts.");
-                    }
-                }
-            }
+        if (SchemaRegistry.hasColumn("accounts", "password_hash")) {
+            return;
+        }
+        try (Statement s = c.createStatement()) {
+            s.execute("ALTER TABLE accounts ADD COLUMN password_hash TEXT");
+            System.out.println("Added missing column password_hash to accounts.");
+            SchemaRegistry.refresh(c);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -115,49 +112,162 @@ public class AccountDAO {
     }
 
     public static Account findById(int id) {
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT * FROM accounts WHERE account_id = ?")) {
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
-                }
-            }
+        try (Connection c = DBConnection.getConnection()) {
+            return find(c, id);
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    public static List<Account> listAll(String filterRole, String search) {
+    /**
+     * Identity columns (id, username, full name, role) of the accounts with
+     * the given ids or usernames, in one query; both null lists every
+     * account. Used by AccountDirectory.
+     */
+    static List<Account> listIdentities(Collection<Integer> ids, Collection<String> usernames) throws SQLException {
         List<Account> list = new ArrayList<>();
-        String sql = "SELECT * FROM accounts WHERE 1=1 ";
-        if (filterRole != null && !filterRole.isEmpty()) {
-            sql += " AND role = ?";
+        boolean all = ids == null && usernames == null;
+        int nIds = ids != null ? ids.size() : 0;
+        int nNames = usernames != null ? usernames.size() : 0;
+        if (!all && nIds == 0 && nNames == 0) {
+            return list;
         }
-        if (search != null && !search.isEmpty()) {
-            sql += " AND (full_name LIKE ? OR username LIKE ?)";
+        StringBuilder sql = new StringBuilder("SELECT account_id, username, full_name, role FROM accounts");
+        if (!all) {
+            sql.append(" WHERE ");
+            if (nIds > 0) {
+                sql.append("account_id IN (").append(String.join(",", Collections.nCopies(nIds, "?"))).append(")");
+            }
+            if (nNames > 0) {
+                sql.append(nIds > 0 ? " OR " : "").append("username IN (").append(String.join(",", Collections.nCopies(nNames, "?"))).append(")");
+            }
         }
-        sql += " ORDER BY account_id DESC";
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            int idx = 1;
-            if (filterRole != null && !filterRole.isEmpty()) {
-                ps.setString(idx++, filterRole);
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (ids != null) {
+                for (int id : ids) {
+                    ps.setInt(i++, id);
+                }
             }
-            if (search != null && !search.isEmpty()) {
-                ps.setString(idx++, "%" + search + "%");
-                ps.setString(idx++, "%" + search + "%");
+            if (usernames != null) {
+                for (String u : usernames) {
+                    ps.setString(i++, u);
+                }
             }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Account a = new Account();
+                    a.accountId = rs.getInt("account_id");
+                    a.username = rs.getString("username");
+                    a.fullName = rs.getString("full_name");
+                    a.role = rs.getString("role");
+                    list.add(a);
+                }
+            }
+        }
+        return list;
+    }
+
+    private static Account find(Connection c, int id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT * FROM accounts WHERE account_id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Row for an "account.changed" event; the password hash stays off the
+     * EventBus.
+     */
+    private static Account snapshot(Connection c, int id) throws SQLException {
+        Account a = find(c, id);
+        if (a != null) {
+            a.passwordHash = null;
+        }
+        return a;
+    }
+
+    public static List<Account> listAll(String filterRole, String search) throws SQLException {
+        return listPage(filterRole, search, 0, 0);
+    }
+
+    /**
+     * Keyset-paginated listAll: up to pageSize accounts with account_id below
+     * beforeAccountId, newest first. beforeAccountId = 0 starts at the top;
+     * pageSize 0 means no limit.
+     */
+    public static List<Account> listPage(String filterRole, String search, int beforeAccountId, int pageSize) throws SQLException {
+        List<Account> list = new ArrayList<>();
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(pageSql(filterRole, search, beforeAccountId, pageSize))) {
+            bindPage(ps, filterRole, search, beforeAccountId, pageSize);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     list.add(mapRow(rs));
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return list;
     }
 
+    public static int count(String filterRole, String search) throws SQLException {
+        String sql = "SELECT COUNT(*) AS c FROM accounts WHERE 1=1 " + filterClause(filterRole, search);
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            bindFilters(ps, 1, filterRole, search);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("c");
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The listPage query; bindPage binds its parameters. Package-private so
+     * QueryPlanVerifier explains exactly what the list runs.
+     */
+    static String pageSql(String filterRole, String search, int beforeAccountId, int pageSize) {
+        return "SELECT * FROM accounts WHERE 1=1 " + filterClause(filterRole, search)
+                + (beforeAccountId > 0 ? " AND account_id < ?" : "")
+                + " ORDER BY account_id DESC"
+                + (pageSize > 0 ? " LIMIT ?" : "");
+    }
+
+    static void bindPage(PreparedStatement ps, String filterRole, String search, int beforeAccountId, int pageSize) throws SQLException {
+        int idx = bindFilters(ps, 1, filterRole, search);
+        if (beforeAccountId > 0) {
+            ps.setInt(idx++, beforeAccountId);
+        }
+        if (pageSize > 0) {
+            ps.setInt(idx++, pageSize);
+        }
+    }
+
+    private static String filterClause(String filterRole, String search) {
+        String sql = "";
+        if (filterRole != null && !filterRole.isEmpty()) {
+            sql += " AND role = ?";
+        }
+        if (search != null && !search.isEmpty()) {
+            sql += " AND (full_name LIKE ? OR username LIKE ?)";
+        }
+        return sql;
+    }
+
+    private static int bindFilters(PreparedStatement ps, int idx, String filterRole, String search) throws SQLException {
+        if (filterRole != null && !filterRole.isEmpty()) {
+            ps.setString(idx++, filterRole);
+        }
+        if (search != null && !search.isEmpty()) {
+            ps.setString(idx++, "%" + search + "%");
+            ps.setString(idx++, "%" + search + "%");
+        }
+        return idx;
+    }
+
     /**
      * Save or update account. When inserting, generated key is retrieved and
      * set on the account object so callers get the assigned account_id.
@@ -165,10 +275,15 @@ public class AccountDAO {
      * @param a account to save (mutable)
      * @param plainPassword plaintext password to set (null to leave unchanged
      * for updates)
+     * Posts an "account.changed" ChangeEvent with the rows before and after
+     * the write.
+     *
      * @return true if saved
      */
     public static boolean save(Account a, String plainPassword) {
         try (Connection c = DBConnection.getConnection()) {
+            boolean isNew = a.accountId <= 0;
+            Account before = isNew ? null : snapshot(c, a.accountId);
             if (a.accountId > 0) {
                 String sql = "UPDATE accounts SET full_name=?, username=?, email=?, contact_number=?, sex=?, role=?, profile_picture=?"
                         + (plainPassword != null && !plainPassword.isEmpty() ? ", password_hash=? " : "")
@@ -209,6 +324,11 @@ public class AccountDAO {
                     }
                 }
             }
+            Account after = snapshot(c, a.accountId);
+            UnitOfWork.afterCommit(() -> {
+                AccountDirectory.put(a.accountId, after);
+                EventBus.postChange("account.changed", isNew ? ChangeEvent.created(a.accountId, after) : ChangeEvent.updated(a.accountId, before, after));
+            });
             ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", a.accountId > 0 ? "Updated" : "Added", "accounts", a.accountId, "Account saved/updated.");
             return true;
         } catch (SQLException e) {
@@ -224,8 +344,14 @@ public class AccountDAO {
 
     public static boolean delete(int id) {
         try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("DELETE FROM accounts WHERE account_id=?")) {
+            Account before = snapshot(c, id);
             ps.setInt(1, id);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) {
+                UnitOfWork.afterCommit(() -> {
+                    AccountDirectory.remove(id);
+                    EventBus.postChange("account.changed", ChangeEvent.deleted(id, before));
+                });
+            }
             ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", "Deleted", "accounts", id, "Account deleted.");
             return true;
         } catch (SQLException e) {
@@ -0,0 +1,345 @@
+// AccountDirectory.java
+// In-memory directory of accounts: id and username to display name and role.
+package Main;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the account references stored in other tables (patients.registered_by
+ * as an account_id, test_records.technician as a username) to display names
+ * without a query per row. The accounts table is small, so warm() loads all of
+ * it with one query; Sign_In runs it in the background right after login.
+ *
+ * The bulk resolveIds / resolveUsernames calls are meant for the loader that
+ * reads a table page: once warm they make no query at all, and references the
+ * directory does not know (accounts added by another client) are fetched
+ * together with one IN query. Unknown references are remembered as missing,
+ * so a deleted account is not looked up again. displayName / displayNameOf
+ * are for renderers and other EDT code: they only read the maps and never
+ * query, falling back to the raw id or username for an account that is not
+ * loaded (yet); the background loaders resolve their rows in bulk first.
+ *
+ * AccountDAO keeps the directory exact for writes made through it: after a
+ * save or delete commits it stores the new row or drops the id, in the same
+ * after-commit hook that posts "account.changed". Changes made by other
+ * clients are seen after clear(), which Sign_In calls before warming at
+ * each login.
+ */
+public class AccountDirectory {
+
+    /**
+     * The identity of one account; never carries the password hash.
+     */
+    public static class Entry {
+
+        public final int accountId;
+        public final String username;
+        public final String fullName;
+        public final String role;
+
+        Entry(int accountId, String username, String fullName, String role) {
+            this.accountId = accountId;
+            this.username = username;
+            this.fullName = fullName;
+            this.role = role;
+        }
+
+        /**
+         * Full name, or the username if the account has none.
+         */
+        public String displayName() {
+            return fullName != null && !fullName.isEmpty() ? fullName : username;
+        }
+    }
+
+    private static final Object WARMING = new Object();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong queries = new AtomicLong();
+
+    // all guarded by the class lock
+    private static final Map<Integer, Entry> byId = new HashMap<>();
+    private static final Map<String, Entry> byUsername = new HashMap<>(); // lower-cased keys
+    private static final Set<Integer> missingIds = new HashSet<>();
+    private static final Set<String> missingUsernames = new HashSet<>();
+    private static boolean warm = false;
+    private static long writes = 0; // bumped by every committed write; an older read is not stored
+
+    /**
+     * Load every account with one query (done once; later calls return at
+     * once until clear()).
+     */
+    public static void warm() {
+        synchronized (WARMING) { // a lookup during the login warm-up waits for it instead of loading again
+            long generation;
+            synchronized (AccountDirectory.class) {
+                if (warm) {
+                    return;
+                }
+                generation = writes;
+            }
+            List<Account> all;
+            try {
+                queries.incrementAndGet();
+                all = AccountDAO.listIdentities(null, null);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return; // stays cold, the next lookup tries again
+            }
+            synchronized (AccountDirectory.class) {
+                if (warm || writes != generation) {
+                    return;
+                }
+                for (Account a : all) {
+                    store(a);
+                }
+                warm = true;
+            }
+        }
+    }
+
+    /**
+     * warm() on a background thread.
+     */
+    public static void warmAsync() {
+        Thread t = new Thread(AccountDirectory::warm, "Account-Directory-Warm");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * The accounts with the given ids; ids without an account are left out.
+     * Makes no query if all are known, otherwise one.
+     */
+    public static Map<Integer, Entry> resolveIds(Collection<Integer> ids) {
+        return resolve(ids, null).ids;
+    }
+
+    /**
+     * The accounts with the given usernames, keyed by the username as passed
+     * in; usernames without an account are left out. Makes no query if all
+     * are known, otherwise one.
+     */
+    public static Map<String, Entry> resolveUsernames(Collection<String> usernames) {
+        return resolve(null, usernames).usernames;
+    }
+
+    /**
+     * Display name of an account id: the full name, the username, or the id
+     * itself if the account is not in the directory. 0 gives "". Memory only,
+     * never queries.
+     */
+    public static String displayName(int accountId) {
+        if (accountId <= 0) {
+            return "";
+        }
+        Entry e;
+        synchronized (AccountDirectory.class) {
+            e = byId.get(accountId);
+        }
+        (e != null ? hits : misses).incrementAndGet();
+        return e != null ? e.displayName() : String.valueOf(accountId);
+    }
+
+    /**
+     * Display name of a username; the username itself if the account is not
+     * in the directory. null gives "". Memory only, never queries.
+     */
+    public static String displayNameOf(String username) {
+        if (username == null || username.isEmpty()) {
+            return "";
+        }
+        Entry e;
+        synchronized (AccountDirectory.class) {
+            e = byUsername.get(key(username));
+        }
+        (e != null ? hits : misses).incrementAndGet();
+        return e != null ? e.displayName() : username;
+    }
+
+    private static class Resolved {
+
+        final Map<Integer, Entry> ids = new HashMap<>();
+        final Map<String, Entry> usernames = new HashMap<>();
+    }
+
+    private static Resolved resolve(Collection<Integer> ids, Collection<String> usernames) {
+        if (UnitOfWork.current() == null) {
+            warm(); // no-op once warm
+        }
+        Resolved r = new Resolved();
+        List<Integer> unknownIds = new ArrayList<>();
+        List<String> unknownNames = new ArrayList<>();
+        long generation;
+        synchronized (AccountDirectory.class) {
+            generation = writes;
+            if (ids != null) {
+                for (Integer id : ids) {
+                    if (id == null || id <= 0 || r.ids.containsKey(id)) {
+                        continue;
+                    }
+                    Entry e = byId.get(id);
+                    if (e != null) {
+                        hits.incrementAndGet();
+                        r.ids.put(id, e);
+                    } else if (missingIds.contains(id)) {
+                        hits.incrementAndGet();
+                    } else if (!unknownIds.contains(id)) {
+                        unknownIds.add(id);
+                    }
+                }
+            }
+            if (usernames != null) {
+                for (String u : usernames) {
+                    if (u == null || u.isEmpty() || r.usernames.containsKey(u)) {
+                        continue;
+                    }
+                    String key = key(u);
+                    Entry e = byUsername.get(key);
+                    if (e != null) {
+                        hits.incrementAndGet();
+                        r.usernames.put(u, e);
+                    } else if (missingUsernames.contains(key)) {
+                        hits.incrementAndGet();
+                    } else if (!unknownNames.contains(u)) {
+                        unknownNames.add(u);
+                    }
+                }
+            }
+        }
+        if (unknownIds.isEmpty() && unknownNames.isEmpty()) {
+            return r;
+        }
+        misses.addAndGet(unknownIds.size() + unknownNames.size());
+        List<Account> found;
+        try {
+            queries.incrementAndGet();
+            found = AccountDAO.listIdentities(unknownIds, unknownNames);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return r; // not remembered as missing, the next resolve tries again
+        }
+        boolean keep = UnitOfWork.current() == null; // rows of an open transaction may still roll back
+        synchronized (AccountDirectory.class) {
+            keep = keep && writes == generation;
+            for (Account a : found) {
+                Entry e = keep ? store(a) : entry(a);
+                if (unknownIds.contains(a.accountId)) {
+                    r.ids.put(a.accountId, e);
+                }
+                for (String u : unknownNames) {
+                    if (a.username != null && key(a.username).equals(key(u))) {
+                        r.usernames.put(u, e);
+                    }
+                }
+            }
+            if (keep) {
+                for (Integer id : unknownIds) {
+                    if (!r.ids.containsKey(id)) {
+                        missingIds.add(id);
+                    }
+                }
+                for (String u : unknownNames) {
+                    if (!r.usernames.containsKey(u)) {
+                        missingUsernames.add(key(u));
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * A committed save: store the row as written (null drops the id).
+     */
+    static synchronized void put(int accountId, Account a) {
+        writes++;
+        drop(accountId);
+        if (a != null) {
+            store(a);
+        }
+    }
+
+    /**
+     * A committed delete.
+     */
+    static synchronized void remove(int accountId) {
+        writes++;
+        drop(accountId);
+        missingIds.add(accountId);
+    }
+
+    /**
+     * Forget everything; the next lookup warms the directory again.
+     */
+    public static synchronized void clear() {
+        writes++;
+        byId.clear();
+        byUsername.clear();
+        missingIds.clear();
+        missingUsernames.clear();
+        warm = false;
+    }
+
+    private static void drop(int accountId) {
+        Entry old = byId.remove(accountId);
+        if (old != null && old.username != null) {
+            byUsername.remove(key(old.username));
+        }
+    }
+
+    private static Entry store(Account a) {
+        Entry e = entry(a);
+        drop(a.accountId);
+        byId.put(a.accountId, e);
+        missingIds.remove(a.accountId);
+        if (a.username != null) {
+            byUsername.put(key(a.username), e);
+            missingUsernames.remove(key(a.username));
+        }
+        return e;
+    }
+
+    private static Entry entry(Account a) {
+        return new Entry(a.accountId, a.username, a.fullName, a.role);
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getQueries() {
+        return queries.get();
+    }
+
+    public static synchronized int size() {
+        return byId.size();
+    }
+
+    public static String summary() {
+        boolean isWarm;
+        synchronized (AccountDirectory.class) {
+            isWarm = warm;
+        }
+        return "account directory: " + size() + " accounts" + (isWarm ? "" : " (cold)") + ", " + hits.get() + " hits, "
+                + misses.get() + " misses, " + queries.get() + " queries";
+    }
+}
@@ -3,14 +3,13 @@
 package Main;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
-public class Account_List_Panel extends JPanel {
+public class Account_List_Panel extends JPanel implements Refreshable {
 
     private JTable table;
-    private DefaultTableModel model;
+    private PagedTableModel<Account> model;
+    private JLabel lblCount;
     private JTextField txtSearch;
     private JComboBox<String> cmbRole;
 
@@ -31,15 +30,18 @@ public class Account_List_Panel extends JPanel {
         top.add(cmbRole);
         top.add(btnSearch);
         top.add(btnAdd);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        top.add(busy);
         add(top, BorderLayout.NORTH);
 
-        model = new DefaultTableModel(new Object[]{"ID", "Name", "Username", "Role", "Contact", "Email"}, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel<>(new String[]{"ID", "Name", "Username", "Role", "Contact", "Email"},
+                a -> a.accountId,
+                a -> new Object[]{a.accountId, a.fullName, a.username, a.role, a.contactNumber, a.email},
+                new BackgroundLoader(busy));
         table = new JTable(model);
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        JScrollPane scroll = new JScrollPane(table);
+        model.attachTo(scroll);
+        add(scroll, BorderLayout.CENTER);
 
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnEdit = new JButton("Edit");
@@ -48,17 +50,25 @@ public class Account_List_Panel extends JPanel {
         btnDelete.addActionListener(e -> deleteSelected());
         bottom.add(btnEdit);
         bottom.add(btnDelete);
+        lblCount = new JLabel();
+        bottom.add(lblCount);
+        model.addTableModelListener(e -> lblCount.setText(model.getStatusText()));
         add(bottom, BorderLayout.SOUTH);
 
         load();
     }
 
+    @Override
+    public void refresh() {
+        load();
+    }
+
     public void load() {
-        model.setRowCount(0);
-        List<Account> accounts = AccountDAO.listAll((String) cmbRole.getSelectedItem(), txtSearch.getText().trim());
-        for (Account a : accounts) {
-            model.addRow(new Object[]{a.accountId, a.fullName, a.username, a.role, a.contactNumber, a.email});
-        }
+        String role = (String) cmbRole.getSelectedItem();
+        String search = txtSearch.getText().trim();
+        model.reload(PagedTableModel.source(
+                (before, size) -> AccountDAO.listPage(role, search, before, size),
+                () -> AccountDAO.count(role, search)));
     }
 
     private void openForm(Account a) {
@@ -1,5 +1,5 @@
 // ActivityLogDAO.java
-// Robust logging, single implementation.
+// Robust logging, single implementation. Writes are queued (see ActivityLogWriter).
 package Main;
 
 
@@ -9,65 +9,41 @@ import java.util.List;
 
 public class ActivityLogDAO {
 
+    /**
+     * Queue an activity log entry; it is written in the background by
+     * ActivityLogWriter, so this never touches the database. Inside a
+     * UnitOfWork the entry is batched into the scope's transaction instead.
+     */
     public static void log(String user, String action, String targetTable, Integer targetId, String description) {
-        try (Connection c = DBConnection.getConnection()) {
-            boolean hasDescription = hasColumn(c, "activity_log", "description");
-            String sql = hasDescription
-                    ? "INSERT INTO activity_log (account_id, user, action, target_table, target_id, timestamp) VALUES (?,?,?,?,?,?,?)"
-                    : "INSERT INTO activity_log (account_id, user, action, target_table, target_id, timestamp) VALUES (?,?,?,?,?,?)";
-            try (PreparedStatement ps = c.prepareStatement(sql)) {
-                int idx = 1;
-                ps.setString(idx++, user);
-                ps.setString(idx++, action);
-                ps.setString(idx++, targetTable);
-                if (targetId != null) {
-                    ps.setInt(idx++, targetId);
-                } else {
-                    ps.setNull(idx++, Types.INTEGER);
-                }
-                if (hasDescription) {
-                    ps.setString(idx++, description);
-                }
-                ps.setString(idx++, java.time.LocalDateTime.now().toString());
-                ps.executeUpdate();
-            }
-        } catch (SQLException e) {
-            // fallback minimal log
-            try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("INSERT INTO activity_log (user, action, timestamp) VALUES (?,?,?)")) {
-                ps.setString(1, user);
-                ps.setString(2, action);
-                ps.setString(3, java.time.LocalDateTime.now().toString());
-                ps.executeUpdate();
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            try {
+                ActivityLogWriter.get().log(uow, user, action, targetTable, targetId, description);
+                return;
             } catch (SQLException ex) {
-                ex.printStackTrace();
+                ex.printStackTrace(); // fall back to the queue
             }
         }
+        ActivityLogWriter.get().log(user, action, targetTable, targetId, description);
     }
 
-    private static boolean hasColumn(Connection c, String tableName, String columnName) {
-        try {
-            DatabaseMetaData meta = c.getMetaData();
-            try (ResultSet cols = meta.getColumns(c.getCatalog(), null, tableName, columnName)) {
-                return cols.next();
-            }
-        } catch (SQLException e) {
-            return false;
-        }
+    static boolean hasDescriptionColumn() {
+        return SchemaRegistry.hasColumn("activity_log", "description");
+    }
+
+    public static List<ActivityLogEntry> listAll(String search) throws SQLException {
+        return listPage(search, 0, 0);
     }
 
-    public static List<ActivityLogEntry> listAll(String search) {
+    /**
+     * Keyset-paginated listAll: up to pageSize entries with log_id below
+     * beforeLogId, newest first. beforeLogId = 0 starts at the top; pageSize 0
+     * means no limit.
+     */
+    public static List<ActivityLogEntry> listPage(String search, int beforeLogId, int pageSize) throws SQLException {
         List<ActivityLogEntry> list = new ArrayList<>();
-        String sql = "SELECT * FROM activity_log WHERE 1=1 ";
-        if (search != null && !search.isEmpty()) {
-            sql += " AND (user LIKE ? OR action LIKE ? OR COALESCE(description,'') LIKE ?)";
-        }
-        sql += " ORDER BY log_id DESC";
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            if (search != null && !search.isEmpty()) {
-                ps.setString(1, "%" + search + "%");
-                ps.setString(2, "%" + search + "%");
-                ps.setString(3, "%" + search + "%");
-            }
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(pageSql(search, beforeLogId, pageSize))) {
+            bindPage(ps, search, beforeLogId, pageSize);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     ActivityLogEntry e = new ActivityLogEntry();
@@ -82,12 +58,81 @@ public class ActivityLogDAO {
                     list.add(e);
                 }
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
         }
         return list;
     }
 
+    public static int count(String search) throws SQLException {
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(countSql(search))) {
+            bindFilters(ps, 1, search);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("c");
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The listPage query; bindPage binds its parameters. Package-private so
+     * QueryPlanVerifier explains exactly what the list runs.
+     */
+    static String pageSql(String search, int beforeLogId, int pageSize) {
+        return "SELECT * FROM activity_log WHERE 1=1 " + filterClause(search)
+                + (beforeLogId > 0 ? " AND log_id < ?" : "")
+                + " ORDER BY log_id DESC"
+                + (pageSize > 0 ? " LIMIT ?" : "");
+    }
+
+    static void bindPage(PreparedStatement ps, String search, int beforeLogId, int pageSize) throws SQLException {
+        int idx = bindFilters(ps, 1, search);
+        if (beforeLogId > 0) {
+            ps.setInt(idx++, beforeLogId);
+        }
+        if (pageSize > 0) {
+            ps.setInt(idx++, pageSize);
+        }
+    }
+
+    /**
+     * The count query; bindFilters(ps, 1, ...) binds its parameters.
+     */
+    static String countSql(String search) {
+        return "SELECT COUNT(*) AS c FROM activity_log WHERE 1=1 " + filterClause(search);
+    }
+
+    private static String filterClause(String search) {
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms == null) {
+            return "";
+        }
+        if (terms.isId()) {
+            return " AND (log_id = ? OR target_id = ?)";
+        }
+        if (terms.isFullText()) {
+            return " AND MATCH(user, action, description) AGAINST (? IN BOOLEAN MODE)";
+        }
+        return " AND (user LIKE ? OR action LIKE ?)";
+    }
+
+    static int bindFilters(PreparedStatement ps, int idx, String search) throws SQLException {
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms == null) {
+            return idx;
+        }
+        if (terms.isId()) {
+            ps.setInt(idx++, terms.getId());
+            ps.setInt(idx++, terms.getId());
+        } else if (terms.isFullText()) {
+            ps.setString(idx++, terms.getBooleanQuery());
+        } else {
+            ps.setString(idx++, terms.getPrefixPattern());
+            ps.setString(idx++, terms.getPrefixPattern());
+        }
+        return idx;
+    }
+
     private static String safeGetString(ResultSet rs, String col) {
         try {
             return rs.getString(col);
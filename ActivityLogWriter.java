@@ -0,0 +1,375 @@
+// ActivityLogWriter.java
+// Background writer behind ActivityLogDAO.log.
+package Main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous activity log writer. log() only puts the entry on a bounded
+ * in-memory queue; a single daemon thread drains the queue and inserts up to
+ * ACTIVITY_LOG_BATCH_SIZE entries per transaction (group commit), so audit
+ * writes no longer add a connection and a round trip to every save.
+ *
+ * When the queue is full the configured policy applies:
+ * BLOCK waits for room, DROP discards the entry (counted), SPILL appends it
+ * to a local file. Batches that fail to insert are spilled as well. Spilled
+ * entries are replayed into the database after the next successful batch
+ * and on startup.
+ *
+ * At exit DBConnection.close() stops the writer and flushes whatever is still
+ * queued before it closes the pool; entries that cannot be written then are
+ * spilled.
+ * After each committed batch "activity.logged" is posted on the EventBus with
+ * the number of entries written.
+ */
+public class ActivityLogWriter {
+
+    public enum FullPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5000;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static ActivityLogWriter instance = null;
+
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final FullPolicy policy;
+    private final Path spillFile;
+    private final Thread worker;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+
+    ActivityLogWriter(int capacity, int batchSize, FullPolicy policy, Path spillFile) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.policy = policy;
+        this.spillFile = spillFile;
+        this.worker = new Thread(this::drainLoop, "Activity-Log-Writer");
+        this.worker.setDaemon(true);
+    }
+
+    public static synchronized ActivityLogWriter get() {
+        if (instance == null) {
+            instance = new ActivityLogWriter(DBConfig.ACTIVITY_LOG_QUEUE_CAPACITY, DBConfig.ACTIVITY_LOG_BATCH_SIZE,
+                    FullPolicy.valueOf(DBConfig.ACTIVITY_LOG_FULL_POLICY), Path.of(DBConfig.ACTIVITY_LOG_SPILL_FILE));
+            instance.worker.start();
+            DBConnection.installShutdownHook(); // flushes this writer before the pool closes
+        }
+        return instance;
+    }
+
+    /**
+     * Flush and stop the writer if one was started; see shutdown(long).
+     */
+    static void shutdownIfStarted() {
+        ActivityLogWriter w;
+        synchronized (ActivityLogWriter.class) {
+            w = instance;
+        }
+        if (w != null) {
+            w.shutdown(SHUTDOWN_FLUSH_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Queue one entry. The timestamp is taken now, not when it is written.
+     */
+    public void log(String user, String action, String targetTable, Integer targetId, String description) {
+        Entry e = new Entry(user, action, targetTable, targetId, description, LocalDateTime.now().format(TIMESTAMP_FORMAT));
+        if (!running) {
+            spill(List.of(e));
+            return;
+        }
+        if (queue.offer(e)) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(e);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    spill(List.of(e));
+                }
+                break;
+            case SPILL:
+                spill(List.of(e));
+                break;
+            default:
+                long n = dropped.incrementAndGet();
+                if (n == 1 || n % 1000 == 0) {
+                    System.err.println("Activity log queue full, " + n + " entries dropped so far.");
+                }
+                break;
+        }
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop accepting entries and wait up to timeoutMs for the queue to be
+     * written. Whatever is left after that is spilled to the local file.
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            spill(rest);
+        }
+    }
+
+    private void drainLoop() {
+        replaySpill();
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = running ? queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // shutdown(): loop once more to drain without waiting
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            if (write(batch)) {
+                EventBus.post("activity.logged", batch.size());
+                if (running) {
+                    replaySpill();
+                }
+            } else {
+                spill(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Insert the batch in one transaction. Returns false if nothing was
+     * written.
+     */
+    private boolean write(List<Entry> batch) {
+        try (Connection c = DBConnection.getConnection()) {
+            boolean hasDescription = ActivityLogDAO.hasDescriptionColumn();
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(insertSql(hasDescription))) {
+                for (Entry e : batch) {
+                    bind(ps, e, hasDescription);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+                return true;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+        } catch (SQLException | RuntimeException ex) {
+            // e.g. the pool is already shut down: the caller spills the batch
+            System.err.println("Activity log batch of " + batch.size() + " entries failed: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write one entry as part of a UnitOfWork instead of queueing it, so it
+     * commits (or rolls back) together with the change it describes.
+     */
+    void log(UnitOfWork uow, String user, String action, String targetTable, Integer targetId, String description) throws SQLException {
+        Entry e = new Entry(user, action, targetTable, targetId, description, LocalDateTime.now().format(TIMESTAMP_FORMAT));
+        boolean hasDescription = ActivityLogDAO.hasDescriptionColumn();
+        uow.batch(insertSql(hasDescription), ps -> bind(ps, e, hasDescription));
+        UnitOfWork.afterCommit(() -> EventBus.post("activity.logged", 1));
+    }
+
+    private static String insertSql(boolean hasDescription) {
+        return hasDescription
+                ? "INSERT INTO activity_log (user, action, target_table, target_id, description, timestamp) VALUES (?,?,?,?,?,?)"
+                : "INSERT INTO activity_log (user, action, target_table, target_id, timestamp) VALUES (?,?,?,?,?)";
+    }
+
+    private static void bind(PreparedStatement ps, Entry e, boolean hasDescription) throws SQLException {
+        int idx = 1;
+        ps.setString(idx++, e.user);
+        ps.setString(idx++, e.action);
+        ps.setString(idx++, e.targetTable);
+        if (e.targetId != null) {
+            ps.setInt(idx++, e.targetId);
+        } else {
+            ps.setNull(idx++, Types.INTEGER);
+        }
+        if (hasDescription) {
+            ps.setString(idx++, e.description);
+        }
+        ps.setString(idx++, e.timestamp);
+    }
+
+    private synchronized void spill(List<Entry> entries) {
+        try {
+            if (spillFile.getParent() != null) {
+                Files.createDirectories(spillFile.getParent());
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Entry e : entries) {
+                    w.write(e.toLine());
+                    w.newLine();
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not spill " + entries.size() + " activity log entries: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Move spilled entries back into the database. The file is renamed
+     * first so entries spilled meanwhile go to a fresh file.
+     */
+    private void replaySpill() {
+        Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            if (!Files.exists(spillFile) && !Files.exists(replaying)) {
+                return;
+            }
+            try {
+                if (Files.exists(spillFile)) {
+                    if (Files.exists(replaying)) {
+                        // leftover from an interrupted replay: merge it first
+                        Files.write(replaying, Files.readAllBytes(spillFile), StandardOpenOption.APPEND);
+                        Files.delete(spillFile);
+                    } else {
+                        Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+                try (BufferedReader r = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        Entry e = Entry.fromLine(line);
+                        if (e != null) {
+                            entries.add(e);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                System.err.println("Could not read spilled activity log entries: " + ex.getMessage());
+                return;
+            }
+        }
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Entry> batch = entries.subList(from, Math.min(entries.size(), from + batchSize));
+            if (!write(batch)) {
+                // keep the rest in the replay file for the next attempt
+                rewriteReplayFile(replaying, entries.subList(from, entries.size()));
+                return;
+            }
+        }
+        try {
+            Files.deleteIfExists(replaying);
+        } catch (IOException ex) {
+            System.err.println("Could not delete " + replaying + ": " + ex.getMessage());
+        }
+        if (!entries.isEmpty()) {
+            EventBus.post("activity.logged", entries.size());
+        }
+    }
+
+    private synchronized void rewriteReplayFile(Path replaying, List<Entry> rest) {
+        try (BufferedWriter w = Files.newBufferedWriter(replaying, StandardCharsets.UTF_8)) {
+            for (Entry e : rest) {
+                w.write(e.toLine());
+                w.newLine();
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not rewrite " + replaying + ": " + ex.getMessage());
+        }
+    }
+
+    static class Entry {
+
+        private static final String NULL = "\\N"; // cannot clash with an encoded value
+
+        final String user;
+        final String action;
+        final String targetTable;
+        final Integer targetId;
+        final String description;
+        final String timestamp;
+
+        Entry(String user, String action, String targetTable, Integer targetId, String description, String timestamp) {
+            this.user = user;
+            this.action = action;
+            this.targetTable = targetTable;
+            this.targetId = targetId;
+            this.description = description;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * One line of the spill file: tab separated, URL-encoded fields,
+         * \N for null.
+         */
+        String toLine() {
+            return enc(user) + "\t" + enc(action) + "\t" + enc(targetTable) + "\t"
+                    + (targetId == null ? NULL : targetId.toString()) + "\t" + enc(description) + "\t" + enc(timestamp);
+        }
+
+        static Entry fromLine(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 6) {
+                return null;
+            }
+            try {
+                return new Entry(dec(f[0]), dec(f[1]), dec(f[2]), NULL.equals(f[3]) ? null : Integer.valueOf(f[3]), dec(f[4]), dec(f[5]));
+            } catch (RuntimeException ex) {
+                return null;
+            }
+        }
+
+        private static String enc(String s) {
+            return s == null ? NULL : URLEncoder.encode(s, StandardCharsets.UTF_8);
+        }
+
+        private static String dec(String s) {
+            return NULL.equals(s) ? null : URLDecoder.decode(s, StandardCharsets.UTF_8);
+        }
+    }
+}
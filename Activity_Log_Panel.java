@@ -2,14 +2,13 @@
 package Main;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
-public class Activity_Log_Panel extends JPanel {
+public class Activity_Log_Panel extends JPanel implements Refreshable {
 
-    private DefaultTableModel model;
+    private PagedTableModel<ActivityLogEntry> model;
     private JTable table;
+    private JLabel lblCount;
     private JTextField txtSearch;
 
     public Activity_Log_Panel() {
@@ -23,23 +22,38 @@ public class Activity_Log_Panel extends JPanel {
         top.add(new JLabel("Search:"));
         top.add(txtSearch);
         top.add(btnSearch);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        top.add(busy);
         add(top, BorderLayout.NORTH);
 
-        model = new DefaultTableModel(new Object[]{"Time", "User", "Action", "Target", "Target ID"}, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel<>(new String[]{"Time", "User", "Action", "Target", "Target ID"},
+                e -> e.logId,
+                e -> new Object[]{e.timestamp, e.user, e.action, e.targetTable, e.targetId},
+                new BackgroundLoader(busy));
         table = new JTable(model);
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        JScrollPane scroll = new JScrollPane(table);
+        model.attachTo(scroll);
+        add(scroll, BorderLayout.CENTER);
+
+        lblCount = new JLabel();
+        lblCount.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        model.addTableModelListener(e -> lblCount.setText(model.getStatusText()));
+        add(lblCount, BorderLayout.SOUTH);
+
+        // Entries are written in the background; refresh once a batch is committed
+        EventBus.bind(this, "activity.logged", (evt, payload) -> BaseDashboardFrame.requestRefresh(this)); // EDT, coalesced; deferred while hidden
+        load();
+    }
+
+    @Override
+    public void refresh() {
         load();
     }
 
     public void load() {
-        model.setRowCount(0);
-        List<ActivityLogEntry> list = ActivityLogDAO.listAll(txtSearch.getText().trim());
-        for (ActivityLogEntry e : list) {
-            model.addRow(new Object[]{e.timestamp, e.user, e.action, e.targetTable, e.targetId, e.description});
-        }
+        String search = txtSearch.getText().trim();
+        model.reload(PagedTableModel.source(
+                (before, size) -> ActivityLogDAO.listPage(search, before, size),
+                () -> ActivityLogDAO.count(search)));
     }
 }
@@ -1,68 +1,48 @@
 // Admin_Dashboard.java
-// Register for test.saved events so the welcome panel and lists refresh automatically.
+// Cards are created on first show; test.changed marks the profile and trends cards dirty.
 package Main;
 
 import javax.swing.*;
 
 public class Admin_Dashboard extends BaseDashboardFrame {
 
-    private Dashboard_Welcome_Panel welcomePanel = new Dashboard_Welcome_Panel();
-    private Account_List_Panel accountListPanel = new Account_List_Panel();
-    private Patient_List_Panel patientListPanel = new Patient_List_Panel();
-    private Test_Record_List_Panel testListPanel = new Test_Record_List_Panel();
-    private Activity_Log_Panel activityLogPanel = new Activity_Log_Panel();
-    private ProfilePanel profilePanel = new ProfilePanel();
-
     public Admin_Dashboard() {
         super("Admin Dashboard - LabLink");
         buildMenu();
         buildCards();
         setUserLabel(Session.getCurrentUser().fullName + " (" + Session.getCurrentUser().role + ")");
-        // show dashboard by default
-        show("dashboard");
+        // show dashboard by default; the other cards are created when first opened
+        showCard("dashboard");
 
-        // Listen for test saved events to refresh charts & lists
-        EventBus.addListener("test.saved", (evt, payload) -> SwingUtilities.invokeLater(() -> {
-            try {
-                // recreate welcome panel to refresh charts (or expose refresh method)
-                cardPanel.remove(welcomePanel);
-                welcomePanel = new Dashboard_Welcome_Panel();
-                cardPanel.add(welcomePanel, "dashboard");
-                testListPanel.load();
-                patientListPanel.load();
-                activityLogPanel.load();
-                cardPanel.revalidate();
-                cardPanel.repaint();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }));
+        // Test changes alter the profile summary and the trends (refreshed once per burst);
+        // the welcome charts and the test list apply the test.changed deltas themselves
+        refreshOn("test.changed", "profile", "trends");
     }
 
     private void buildMenu() {
-        addMenuButton("Dashboard", () -> show("dashboard"));
-        addMenuButton("Account Management", () -> show("accounts"));
-        addMenuButton("Patient Management", () -> show("patients"));
-        addMenuButton("Test Records", () -> show("tests"));
-        addMenuButton("Activity Log", () -> show("log"));
-        addMenuButton("Profile", () -> show("profile"));
+        addMenuButton("Dashboard", () -> showCard("dashboard"));
+        addMenuButton("Trends", () -> showCard("trends"));
+        addMenuButton("Account Management", () -> showCard("accounts"));
+        addMenuButton("Patient Management", () -> showCard("patients"));
+        addMenuButton("Test Records", () -> showCard("tests"));
+        addMenuButton("Activity Log", () -> showCard("log"));
+        addMenuButton("Diagnostics", () -> showCard("diagnostics"));
+        addMenuButton("Profile", () -> showCard("profile"));
         addMenuButton("Logout", () -> {
             Session.clear();
-            dispose();
+            dispose(); // releases the EventBus bindings of this frame and its cards
             SwingUtilities.invokeLater(() -> new Sign_In().centerAndShow());
         });
     }
 
     private void buildCards() {
-        cardPanel.add(welcomePanel, "dashboard");
-        cardPanel.add(accountListPanel, "accounts");
-        cardPanel.add(patientListPanel, "patients");
-        cardPanel.add(testListPanel, "tests");
-        cardPanel.add(activityLogPanel, "log");
-        cardPanel.add(profilePanel, "profile");
-    }
-
-    private void show(String id) {
-        cards.show(cardPanel, id);
+        registerCard("dashboard", Dashboard_Welcome_Panel::new);
+        registerCard("trends", Dashboard_Trends_Panel::new);
+        registerCard("accounts", Account_List_Panel::new);
+        registerCard("patients", Patient_List_Panel::new);
+        registerCard("tests", Test_Record_List_Panel::new);
+        registerCard("log", Activity_Log_Panel::new);
+        registerCard("diagnostics", Diagnostics_Panel::new);
+        registerCard("profile", ProfilePanel::new);
     }
 }
@@ -0,0 +1,161 @@
+package Main;
+
+import java.awt.Dimension;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs panel queries off the Event Dispatch Thread. Usage (on the EDT):
+ *
+ * loader.load(() -> PatientDAO.listAll(sex, q), list -> fillTable(list));
+ *
+ * The query runs on a small shared, bounded pool of daemon threads; only the
+ * apply step runs on the EDT. Each panel owns one loader. A new load()
+ * supersedes earlier ones from the same loader: a superseded query that has
+ * not started yet is skipped, and the result of one that already ran is
+ * thrown away, so a slow old search never overwrites a newer one. Running
+ * JDBC calls are not interrupted (that can leave the connection unusable).
+ *
+ * The optional indicator component is visible while any query of this loader
+ * is queued or running. A query that throws, or that cannot be queued because
+ * the pool is full, is reported to the optional onError callback (on the EDT,
+ * unless superseded) instead of apply, so callers can reset their state and
+ * tell the user.
+ */
+public class BackgroundLoader {
+
+    private static final int THREADS = 4;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final AtomicInteger threadSeq = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "UI-Loader-" + threadSeq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final JComponent indicator;
+    private final AtomicInteger generation = new AtomicInteger();
+    private int pending = 0; // EDT only
+
+    public BackgroundLoader(JComponent indicator) {
+        this.indicator = indicator;
+        if (indicator != null) {
+            indicator.setVisible(false);
+        }
+    }
+
+    /**
+     * Small indeterminate progress bar to pass as the loading indicator.
+     */
+    public static JProgressBar createIndicator() {
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+        bar.setPreferredSize(new Dimension(80, 12));
+        bar.setVisible(false);
+        return bar;
+    }
+
+    /**
+     * Run query in the background and hand the result to apply on the EDT,
+     * superseding any earlier load of this loader. Call on the EDT.
+     */
+    public <T> void load(Callable<T> query, Consumer<T> apply) {
+        load(query, apply, null);
+    }
+
+    /**
+     * Like load(query, apply), with onError run on the EDT instead of apply
+     * if the query fails or cannot be queued.
+     */
+    public <T> void load(Callable<T> query, Consumer<T> apply, Consumer<Exception> onError) {
+        submit(generation.incrementAndGet(), query, apply, onError);
+    }
+
+    /**
+     * Like load, but does not supersede the current load; the result is
+     * dropped if a newer load() starts meanwhile. Used for follow-up queries
+     * such as the next page of the current result.
+     */
+    public <T> void append(Callable<T> query, Consumer<T> apply) {
+        append(query, apply, null);
+    }
+
+    public <T> void append(Callable<T> query, Consumer<T> apply, Consumer<Exception> onError) {
+        submit(generation.get(), query, apply, onError);
+    }
+
+    /**
+     * Discard any queued or running load of this loader.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    public boolean isBusy() {
+        return pending > 0;
+    }
+
+    private <T> void submit(int gen, Callable<T> query, Consumer<T> apply, Consumer<Exception> onError) {
+        setPending(pending + 1);
+        try {
+            EXECUTOR.execute(() -> {
+                T result = null;
+                Exception failure = null;
+                if (gen == generation.get()) {
+                    try {
+                        result = query.call();
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                }
+                T r = result;
+                Exception ex = failure;
+                SwingUtilities.invokeLater(() -> {
+                    setPending(pending - 1);
+                    if (gen != generation.get()) {
+                        return; // superseded
+                    }
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        if (onError != null) {
+                            onError.accept(ex);
+                        }
+                        return;
+                    }
+                    apply.accept(r);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            setPending(pending - 1);
+            System.err.println("Background load rejected, loader queue is full: " + e.getMessage());
+            if (onError != null) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generation.get()) {
+                        onError.accept(e);
+                    }
+                });
+            }
+        }
+    }
+
+    private void setPending(int n) {
+        pending = n;
+        if (indicator != null) {
+            indicator.setVisible(n > 0);
+        }
+    }
+}
@@ -3,7 +3,18 @@
 package Main;
 import javax.swing.*;
 import java.awt.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
+/**
+ * Cards are registered with a factory and created on first show, so only the
+ * first card queries the database at login. A change that affects a hidden
+ * card only marks it dirty (markDirty / refreshOn / requestRefresh); it is
+ * refreshed when it is next shown, if it implements Refreshable.
+ */
 public class BaseDashboardFrame extends BaseFrame {
 
     protected CardLayout cards = new CardLayout();
@@ -11,6 +22,13 @@ public class BaseDashboardFrame extends BaseFrame {
     protected JPanel sideMenu = new JPanel();
     protected JLabel userLabel = new JLabel();
 
+    private final Map<String, Supplier<? extends JComponent>> cardFactories = new HashMap<>();
+    private final Map<String, JComponent> createdCards = new HashMap<>();
+    private final Set<String> dirtyCards = new HashSet<>();
+    private String currentCard;
+
+    private static final int REFRESH_COALESCE_MS = 150;
+
     public BaseDashboardFrame(String title) {
         super(title);
         build();
@@ -53,4 +71,88 @@ public class BaseDashboardFrame extends BaseFrame {
         userLabel.setBorder(BorderFactory.createEmptyBorder(4, 0, 10, 0));
         sideMenu.add(userLabel, 0);
     }
+
+    protected void registerCard(String id, Supplier<? extends JComponent> factory) {
+        cardFactories.put(id, factory);
+    }
+
+    /**
+     * Show a card, creating it on first use and refreshing it if it was
+     * marked dirty while hidden.
+     */
+    protected void showCard(String id) {
+        JComponent card = createdCards.get(id);
+        if (card == null) {
+            Supplier<? extends JComponent> factory = cardFactories.get(id);
+            if (factory == null) {
+                return;
+            }
+            card = factory.get(); // loads its own data
+            createdCards.put(id, card);
+            dirtyCards.remove(id);
+            cardPanel.add(card, id);
+        } else if (dirtyCards.remove(id) && card instanceof Refreshable) {
+            ((Refreshable) card).refresh();
+        }
+        currentCard = id;
+        cards.show(cardPanel, id);
+    }
+
+    /**
+     * The card if it has been created, else null.
+     */
+    protected JComponent getCard(String id) {
+        return createdCards.get(id);
+    }
+
+    /**
+     * The data behind these cards changed: refresh the visible one now, the
+     * hidden ones when next shown. Cards not created yet need nothing.
+     */
+    protected void markDirty(String... ids) {
+        for (String id : ids) {
+            JComponent card = createdCards.get(id);
+            if (card == null) {
+                continue;
+            }
+            if (id.equals(currentCard) && card.isShowing()) {
+                if (card instanceof Refreshable) {
+                    ((Refreshable) card).refresh();
+                }
+            } else {
+                dirtyCards.add(id);
+            }
+        }
+    }
+
+    /**
+     * markDirty(ids) after eventType events, for as long as this frame is
+     * open. The event must be delivered on the EDT. A burst of events (e.g.
+     * the test.changed of a batch edit, which is delivered per change) marks
+     * the cards once, REFRESH_COALESCE_MS after the last one.
+     */
+    protected void refreshOn(String eventType, String... ids) {
+        Timer burst = new Timer(REFRESH_COALESCE_MS, e -> markDirty(ids));
+        burst.setRepeats(false);
+        EventBus.bind(cardPanel, eventType, (evt, payload) -> burst.restart());
+    }
+
+    /**
+     * For a card's own listeners: refresh it now if it is visible (or not in
+     * a dashboard), else when its dashboard next shows it. Call on the EDT.
+     */
+    public static void requestRefresh(JComponent card) {
+        BaseDashboardFrame frame = (BaseDashboardFrame) SwingUtilities.getAncestorOfClass(BaseDashboardFrame.class, card);
+        if (frame != null) {
+            for (Map.Entry<String, JComponent> e : frame.createdCards.entrySet()) {
+                if (e.getValue() == card) {
+                    frame.markDirty(e.getKey());
+                    return;
+                }
+            }
+        }
+        if (card instanceof Refreshable) {
+            ((Refreshable) card).refresh();
+        }
+    }
 }
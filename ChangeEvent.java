@@ -0,0 +1,50 @@
+// ChangeEvent.java
+// Row-level payload of the "*.changed" EventBus events.
+package Main;
+
+/**
+ * One created, updated or deleted row, posted by the DAO after the write. The
+ * snapshots are read on the writing connection: before is null for CREATED,
+ * after is null for DELETED. Listeners use them to insert, update or remove
+ * the single affected table row instead of reloading the list, e.g.
+ *
+ * EventBus.bindChanges(panel, "patient.changed", (ChangeEvent<Patient> ch) -> ...);
+ *
+ * Event types: "test.changed" (TestRecordRow), "patient.changed" (Patient),
+ * "account.changed" (Account).
+ */
+public class ChangeEvent<T> {
+
+    public enum Kind {
+        CREATED, UPDATED, DELETED
+    }
+
+    public final Kind kind;
+    public final int id;
+    public final T before;
+    public final T after;
+
+    public ChangeEvent(Kind kind, int id, T before, T after) {
+        this.kind = kind;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static <T> ChangeEvent<T> created(int id, T after) {
+        return new ChangeEvent<>(Kind.CREATED, id, null, after);
+    }
+
+    public static <T> ChangeEvent<T> updated(int id, T before, T after) {
+        return new ChangeEvent<>(Kind.UPDATED, id, before, after);
+    }
+
+    public static <T> ChangeEvent<T> deleted(int id, T before) {
+        return new ChangeEvent<>(Kind.DELETED, id, before, null);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + id;
+    }
+}
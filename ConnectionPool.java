@@ -0,0 +1,428 @@
+// ConnectionPool.java
+// Bounded JDBC connection pool used behind DBConnection.
+package Main;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small bounded connection pool. Connections handed out by borrow() are
+ * proxies: calling close() hands the physical connection back to the pool
+ * instead of closing it, so the DAO try-with-resources blocks work unchanged.
+ *
+ * Idle connections above the minimum size are evicted after the idle timeout.
+ * A connection is validated before it is handed out (unless it was returned
+ * only moments ago). Connections held longer than the leak threshold are
+ * reported once, together with the stack trace of the code that borrowed them.
+ *
+ * Each physical connection carries its own StatementCache, so
+ * prepareStatement(sql) on a borrowed connection reuses statements prepared by
+ * earlier borrowers of the same physical connection.
+ *
+ * Statements handed out are wrapped by DbMetrics, and the time each borrow()
+ * waits is recorded there.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final long leakThresholdMs;
+    private final long validationBypassMs;
+    private final int statementCacheSize;
+
+    // Guarded by "this"
+    private final Deque<PhysicalConnection> idle = new ArrayDeque<>();
+    private final Set<Lease> leased = new HashSet<>();
+    private int totalCount = 0; // open physical connections, including ones being opened
+    private boolean closed = false;
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long idleTimeoutMs, long borrowTimeoutMs, long leakThresholdMs, long validationBypassMs, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.validationBypassMs = validationBypassMs;
+        this.statementCacheSize = statementCacheSize;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DB-Pool-Housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout when all
+     * connections are in use. Close the returned connection to give it back.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection c = acquire();
+            DbMetrics.recordConnectionWait(System.nanoTime() - start, true);
+            return c;
+        } catch (SQLException e) {
+            DbMetrics.recordConnectionWait(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    private Connection acquire() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMs;
+        while (true) {
+            PhysicalConnection pc = null;
+            synchronized (this) {
+                while (!closed && idle.isEmpty() && totalCount >= maxSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SQLException("Timed out after " + borrowTimeoutMs + " ms waiting for a database connection ("
+                                + leased.size() + " of " + maxSize + " in use).");
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    }
+                }
+                if (closed) {
+                    throw new SQLException("Connection pool is closed.");
+                }
+                if (!idle.isEmpty()) {
+                    // LIFO: the most recently used connection is the most likely to still be alive
+                    pc = idle.pollFirst();
+                } else {
+                    totalCount++;
+                }
+            }
+            if (pc == null) {
+                pc = open();
+            } else if (!validate(pc)) {
+                discard(pc);
+                continue;
+            }
+            return lease(pc);
+        }
+    }
+
+    /**
+     * Close idle connections and refuse further borrows. Connections still on
+     * loan are closed when they are returned.
+     */
+    public void shutdown() {
+        List<PhysicalConnection> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            totalCount -= toClose.size();
+            notifyAll();
+        }
+        housekeeper.shutdownNow();
+        for (PhysicalConnection pc : toClose) {
+            closeQuietly(pc);
+        }
+    }
+
+    public synchronized int getActiveCount() {
+        return leased.size();
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private PhysicalConnection open() throws SQLException {
+        try {
+            return new PhysicalConnection(DriverManager.getConnection(url, user, password), statementCacheSize);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                totalCount--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private boolean validate(PhysicalConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturnedAt < validationBypassMs) {
+            return true;
+        }
+        try {
+            return pc.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection lease(PhysicalConnection pc) {
+        Lease lease = new Lease(pc, Thread.currentThread().getName(), new Throwable("Connection borrowed here"));
+        lease.proxy = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, lease);
+        synchronized (this) {
+            leased.add(lease);
+        }
+        return lease.proxy;
+    }
+
+    private void release(Lease lease) {
+        PhysicalConnection pc = lease.physical;
+        pc.statements.releaseAll();
+        boolean healthy = reset(pc.connection);
+        synchronized (this) {
+            leased.remove(lease);
+            if (healthy && !closed) {
+                pc.lastReturnedAt = System.currentTimeMillis();
+                idle.addFirst(pc);
+                notifyAll();
+                return;
+            }
+            totalCount--;
+            notifyAll();
+        }
+        closeQuietly(pc);
+    }
+
+    private void discard(PhysicalConnection pc) {
+        synchronized (this) {
+            totalCount--;
+            notifyAll();
+        }
+        closeQuietly(pc);
+    }
+
+    /**
+     * Undo per-session state a borrower may have left behind so the next
+     * borrower starts clean. Returns false if the connection looks broken.
+     */
+    private static boolean reset(Connection c) {
+        try {
+            if (c.isClosed()) {
+                return false;
+            }
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) {
+                c.setReadOnly(false);
+            }
+            c.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            reportLeaks();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        List<PhysicalConnection> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            // Oldest connections sit at the tail of the deque
+            Iterator<PhysicalConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalCount > minSize) {
+                PhysicalConnection pc = it.next();
+                if (now - pc.lastReturnedAt < idleTimeoutMs) {
+                    break;
+                }
+                it.remove();
+                totalCount--;
+                expired.add(pc);
+            }
+        }
+        for (PhysicalConnection pc : expired) {
+            closeQuietly(pc);
+        }
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            synchronized (this) {
+                if (closed || totalCount >= minSize) {
+                    return;
+                }
+                totalCount++;
+            }
+            PhysicalConnection pc;
+            try {
+                pc = open();
+            } catch (SQLException e) {
+                System.err.println("Connection pool could not open a connection: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    totalCount--;
+                } else {
+                    idle.addLast(pc);
+                    notifyAll();
+                    continue;
+                }
+            }
+            closeQuietly(pc);
+            return;
+        }
+    }
+
+    private void reportLeaks() {
+        List<Lease> suspects = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Lease lease : leased) {
+                if (!lease.leakReported && now - lease.borrowedAt > leakThresholdMs) {
+                    lease.leakReported = true;
+                    suspects.add(lease);
+                }
+            }
+        }
+        for (Lease lease : suspects) {
+            System.err.println("Possible connection leak: connection held for " + (now - lease.borrowedAt)
+                    + " ms by thread '" + lease.threadName + "'.");
+            lease.borrowStack.printStackTrace();
+        }
+    }
+
+    private static void closeQuietly(PhysicalConnection pc) {
+        pc.statements.closeAll();
+        try {
+            pc.connection.close();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    private static class PhysicalConnection {
+
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastReturnedAt;
+
+        PhysicalConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statements = new StatementCache(statementCacheSize);
+            this.lastReturnedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * One loan of a physical connection; also the invocation handler of the
+     * proxy given to the borrower.
+     */
+    private class Lease implements InvocationHandler {
+
+        final PhysicalConnection physical;
+        final String threadName;
+        final Throwable borrowStack;
+        final long borrowedAt = System.currentTimeMillis();
+        boolean leakReported = false;
+        Connection proxy;
+        private boolean returned = false;
+
+        Lease(PhysicalConnection physical, String threadName, Throwable borrowStack) {
+            this.physical = physical;
+            this.threadName = threadName;
+            this.borrowStack = borrowStack;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) {
+                            return null;
+                        }
+                        returned = true;
+                    }
+                    release(this);
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        if (returned) {
+                            return true;
+                        }
+                    }
+                    return physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical.connection + "]";
+                default:
+                    break;
+            }
+            synchronized (this) {
+                if (returned) {
+                    throw new SQLException("Connection has already been returned to the pool.");
+                }
+            }
+            if (StatementCache.isCacheable(method)) {
+                return DbMetrics.wrap(physical.statements.prepare(physical.connection, this.proxy, (String) args[0], StatementCache.autoGeneratedKeys(args)), (String) args[0]);
+            }
+            Object result;
+            try {
+                result = method.invoke(physical.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                return DbMetrics.wrap((Statement) result, args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+            }
+            return result;
+        }
+    }
+}
@@ -4,12 +4,48 @@ package Main;
 public class DBConfig {
 
     // Use your MySQL connection string:
-    public static final String JDBC_URL = "jdbc:mysql://localhost:3306/backend?zeroDateTimeBehavior=CONVERT_TO_NULL&serverTimezone=UTC";
+    // useServerPrepStmts=true makes prepared statements server-side, so cached ones skip re-parsing
+    // rewriteBatchedStatements=true sends a JDBC insert batch as one multi-row INSERT
+    public static final String JDBC_URL = "jdbc:mysql://localhost:3306/backend?zeroDateTimeBehavior=CONVERT_TO_NULL&serverTimezone=UTC&useServerPrepStmts=true&rewriteBatchedStatements=true";
 
     // MySQL credentials
     public static final String MYSQL_USER = "root";
     public static final String MYSQL_PASSWORD = ""; // set if you have password
 
+    // Connection pool (see ConnectionPool)
+    public static final int POOL_MIN_SIZE = 1;
+    public static final int POOL_MAX_SIZE = 8;
+    public static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000L;   // close idle connections above min size after this
+    public static final long POOL_BORROW_TIMEOUT_MS = 10 * 1000L;     // max wait for a free connection
+    public static final long POOL_LEAK_THRESHOLD_MS = 60 * 1000L;     // report connections held longer than this
+    public static final long POOL_VALIDATION_BYPASS_MS = 500L;        // skip isValid() for connections returned this recently
+    public static final int STATEMENT_CACHE_SIZE = 64;                // prepared statements kept per connection (LRU), 0 disables
+
+    // JDBC instrumentation (see DbMetrics; MBean Main:type=DbMetrics)
+    public static final boolean DB_METRICS_ENABLED = true;
+    public static final long DB_SLOW_QUERY_MS = 250;                          // statements at least this slow go to the slow query log
+    public static final String DB_SLOW_QUERY_LOG = "data/slow_queries.log";
+    public static final String DB_METRICS_REPORT_FILE = "data/db_metrics.txt"; // rewritten periodically and on shutdown
+    public static final long DB_METRICS_REPORT_MS = 60 * 1000L;              // 0 disables the periodic report
+
+    // Patients kept in PatientCache (LRU)
+    public static final int PATIENT_CACHE_SIZE = 2000;
+
+    // Activity log writer (see ActivityLogWriter)
+    public static final int ACTIVITY_LOG_QUEUE_CAPACITY = 10000;
+    public static final int ACTIVITY_LOG_BATCH_SIZE = 200;                  // entries per INSERT transaction
+    public static final String ACTIVITY_LOG_FULL_POLICY = "SPILL";          // BLOCK, DROP or SPILL when the queue is full
+    public static final String ACTIVITY_LOG_SPILL_FILE = "data/activity_log.spill";
+
+    // Dashboard charts apply test changes as deltas; a full requery corrects drift (e.g. other clients' writes)
+    public static final int DASHBOARD_REQUERY_MS = 5 * 60 * 1000;
+
+    // EDT stall watchdog (see EdtWatchdog; Admin Dashboard > Diagnostics)
+    public static final long EDT_STALL_THRESHOLD_MS = 200;             // events running at least this long are logged
+    public static final long EDT_SAMPLE_INTERVAL_MS = 40;              // EDT stack sampling period while an event runs
+    public static final String EDT_STALL_LOG = "data/edt_stalls.log";
+    public static final long EDT_STALL_LOG_MAX_BYTES = 1024 * 1024L;   // rolled over to .1 beyond this
+
     // Seed admin credentials if accounts table is empty
     public static final String DEFAULT_ADMIN_USERNAME = "admin";
     public static final String DEFAULT_ADMIN_PASSWORD = "admin"; // seeded password (PBKDF2 hashed on insert)
@@ -1,32 +1,70 @@
 // DBConnection.java
-// MySQL-only connection manager
+// MySQL-only connection manager backed by a bounded ConnectionPool.
+// Closing a connection obtained here returns it to the pool.
+// Inside a UnitOfWork the scope's connection is handed out instead.
+// One shutdown hook flushes the activity log writer, then closes the pool.
 package Main;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DBConnection {
 
-    private static Connection conn = null;
+    private static ConnectionPool pool = null;
+    private static boolean closed = false;
+    private static boolean hookInstalled = false;
 
-    public static synchronized Connection getConnection() throws SQLException {
-        if (conn == null || conn.isClosed()) {
+    public static Connection getConnection() throws SQLException {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            return uow.getConnection();
+        }
+        return pool().borrow();
+    }
+
+    private static synchronized ConnectionPool pool() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        if (pool == null) {
             String url = DBConfig.JDBC_URL;
             if (url == null || url.isEmpty()) {
                 throw new SQLException("JDBC_URL is not configured in DBConfig.");
             }
-            conn = DriverManager.getConnection(url, DBConfig.MYSQL_USER, DBConfig.MYSQL_PASSWORD);
+            pool = new ConnectionPool(url, DBConfig.MYSQL_USER, DBConfig.MYSQL_PASSWORD,
+                    DBConfig.POOL_MIN_SIZE, DBConfig.POOL_MAX_SIZE, DBConfig.POOL_IDLE_TIMEOUT_MS,
+                    DBConfig.POOL_BORROW_TIMEOUT_MS, DBConfig.POOL_LEAK_THRESHOLD_MS, DBConfig.POOL_VALIDATION_BYPASS_MS,
+                    DBConfig.STATEMENT_CACHE_SIZE);
+            DbMetrics.start(pool);
+            installShutdownHook();
+        }
+        return pool;
+    }
+
+    /**
+     * Register the hook that runs close() at exit (once). Also called by
+     * ActivityLogWriter, so its queue is flushed even if no pool was made.
+     */
+    static synchronized void installShutdownHook() {
+        if (!hookInstalled) {
+            hookInstalled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(DBConnection::close, "DB-Pool-Shutdown"));
         }
-        return conn;
     }
 
-    public static synchronized void close() {
-        try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
+    /**
+     * Write the queued activity log entries, then close the pool. Later
+     * getConnection() calls fail instead of creating a new pool.
+     */
+    public static void close() {
+        // not under the lock: the writer's last batch still borrows a connection
+        ActivityLogWriter.shutdownIfStarted();
+        synchronized (DBConnection.class) {
+            closed = true;
+            if (pool != null) {
+                DbMetrics.stop();
+                pool.shutdown();
+                pool = null;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 }
@@ -0,0 +1,143 @@
+package Main;
+
+import javax.swing.*;
+import java.awt.*;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.Day;
+import org.jfree.data.time.RegularTimePeriod;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.time.Week;
+
+/**
+ * Admin dashboard trends over the last year: tests per day, tests per
+ * category per week, and completed vs pending tests per day (by
+ * date_conducted; Verified counts as completed). The series are built from
+ * test_daily_rollup (see TestRollupEngine), which is caught up with the
+ * change journal first, so loading reads a few thousand bucket rows however
+ * many tests there are. refresh() swaps the datasets of the existing charts.
+ */
+public class Dashboard_Trends_Panel extends JPanel implements Refreshable {
+
+    private static final int DAYS = 365;
+
+    private final XYPlot perDayPlot;
+    private final XYPlot perCategoryPlot;
+    private final XYPlot statusPlot;
+    private final JLabel hint;
+    private final BackgroundLoader loader;
+
+    public Dashboard_Trends_Panel() {
+        setLayout(new BorderLayout());
+        setBackground(UiTheme.BG);
+        JLabel title = new JLabel("Trends", SwingConstants.LEFT);
+        title.setFont(UiTheme.HEADER_FONT.deriveFont(22f));
+        title.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        add(title, BorderLayout.NORTH);
+
+        JFreeChart perDay = ChartFactory.createTimeSeriesChart("Tests per Day", "Date", "Tests", new TimeSeriesCollection(), false, true, false);
+        JFreeChart perCategory = ChartFactory.createTimeSeriesChart("Tests per Category per Week", "Week", "Tests", new TimeSeriesCollection(), true, true, false);
+        JFreeChart byStatus = ChartFactory.createTimeSeriesChart("Completed vs Pending per Day", "Date", "Tests", new TimeSeriesCollection(), true, true, false);
+        perDayPlot = perDay.getXYPlot();
+        perCategoryPlot = perCategory.getXYPlot();
+        statusPlot = byStatus.getXYPlot();
+
+        JPanel charts = new JPanel(new GridLayout(3, 1, 0, 12));
+        charts.setBorder(BorderFactory.createEmptyBorder(0, 12, 12, 12));
+        charts.setOpaque(false);
+        for (JFreeChart chart : new JFreeChart[]{perDay, perCategory, byStatus}) {
+            ChartPanel cp = new ChartPanel(chart);
+            cp.setMouseWheelEnabled(true);
+            charts.add(cp);
+        }
+        add(charts, BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bottom.setOpaque(false);
+        hint = new JLabel("Loading trends...", SwingConstants.LEFT);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        bottom.add(hint);
+        bottom.add(busy);
+        add(bottom, BorderLayout.SOUTH);
+
+        loader = new BackgroundLoader(busy);
+        refresh();
+    }
+
+    @Override
+    public void refresh() {
+        loader.load(Dashboard_Trends_Panel::queryTrends, this::applyTrends, e -> hint.setText("Could not load the trends: " + e.getMessage()));
+    }
+
+    /**
+     * Per day, per category/week and per status datasets; runs on a loader
+     * thread (the datasets have no listeners until applyTrends).
+     */
+    private static TimeSeriesCollection[] queryTrends() throws SQLException {
+        LocalDate from = LocalDate.now().minusDays(DAYS - 1);
+        List<TestRollupEngine.DayCount> buckets = TestRollupEngine.since(from);
+
+        TimeSeries total = new TimeSeries("Tests");
+        TimeSeries completed = new TimeSeries("Completed");
+        TimeSeries pending = new TimeSeries("Pending");
+        // days without tests are 0, not a gap the line skips over
+        for (LocalDate d = from; !d.isAfter(LocalDate.now()); d = d.plusDays(1)) {
+            Day day = day(d);
+            total.add(day, 0);
+            completed.add(day, 0);
+            pending.add(day, 0);
+        }
+        Map<String, TimeSeries> byCategory = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (TestRollupEngine.DayCount b : buckets) {
+            Day day = day(b.day);
+            add(total, day, b.count);
+            if ("Completed".equalsIgnoreCase(b.status) || "Verified".equalsIgnoreCase(b.status)) {
+                add(completed, day, b.count);
+            } else if ("Pending".equalsIgnoreCase(b.status)) {
+                add(pending, day, b.count);
+            }
+            add(byCategory.computeIfAbsent(b.category, TimeSeries::new), new Week(Date.valueOf(b.day)), b.count);
+        }
+
+        TimeSeriesCollection perDay = new TimeSeriesCollection(total);
+        TimeSeriesCollection perCategory = new TimeSeriesCollection();
+        for (TimeSeries s : byCategory.values()) {
+            for (LocalDate d = from; !d.isAfter(LocalDate.now()); d = d.plusWeeks(1)) {
+                add(s, new Week(Date.valueOf(d)), 0);
+            }
+            perCategory.addSeries(s);
+        }
+        TimeSeriesCollection byStatus = new TimeSeriesCollection();
+        byStatus.addSeries(completed);
+        byStatus.addSeries(pending);
+        return new TimeSeriesCollection[]{perDay, perCategory, byStatus};
+    }
+
+    private static Day day(LocalDate d) {
+        return new Day(d.getDayOfMonth(), d.getMonthValue(), d.getYear());
+    }
+
+    private static void add(TimeSeries series, RegularTimePeriod period, int count) {
+        Number current = series.getValue(period);
+        series.addOrUpdate(period, (current == null ? 0 : current.intValue()) + count);
+    }
+
+    /**
+     * Put the new datasets into the existing charts; runs on the EDT.
+     */
+    private void applyTrends(TimeSeriesCollection[] trends) {
+        perDayPlot.setDataset(trends[0]);
+        perCategoryPlot.setDataset(trends[1]);
+        statusPlot.setDataset(trends[2]);
+        hint.setText("Last " + DAYS + " days, by date conducted.");
+    }
+}
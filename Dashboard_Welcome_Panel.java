@@ -3,10 +3,9 @@ package Main;
 import javax.swing.*;
 import java.awt.*;
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
@@ -18,8 +17,22 @@ import org.jfree.chart.plot.PiePlot;
  * Category. Status slices get fixed, distinct colors. Category slices get
  * deterministic, high-contrast colors generated from their names (HSB-based) so
  * each category is visually distinct even when there are many categories.
+ * The counts are queried in the background; the charts start out empty.
+ * refresh() requeries them into the same datasets and charts. A
+ * "test.changed" event moves one test between slices (old status/category
+ * -1, new +1) without a query; the full requery only runs every
+ * DBConfig.DASHBOARD_REQUERY_MS to pick up writes made by other clients.
  */
-public class Dashboard_Welcome_Panel extends JPanel {
+public class Dashboard_Welcome_Panel extends JPanel implements Refreshable {
+
+    private final DefaultPieDataset statusDataset;
+    private final DefaultPieDataset categoryDataset;
+    private final PiePlot statusPlot;
+    private final PiePlot catPlot;
+    private final JLabel hint;
+    private final BackgroundLoader loader;
+    private final Timer requeryTimer;
+    private boolean sampleData = true; // datasets hold placeholder slices, not counts
 
     public Dashboard_Welcome_Panel() {
         setLayout(new BorderLayout());
@@ -35,60 +48,171 @@ public class Dashboard_Welcome_Panel extends JPanel {
         charts.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
         charts.setOpaque(false);
 
-        // Create datasets
-        DefaultPieDataset statusDataset = new DefaultPieDataset();
-        DefaultPieDataset categoryDataset = new DefaultPieDataset();
-
-        // Populate dataset from DB (counts)
-        try (Connection c = DBConnection.getConnection(); Statement s = c.createStatement()) {
-            // Status counts
-            try (ResultSet rs = s.executeQuery("SELECT status, COUNT(*) AS c FROM tests GROUP BY status")) {
-                int total = 0;
-                while (rs.next()) {
-                    String status = rs.getString("status");
-                    int count = rs.getInt("c");
-                    statusDataset.setValue(status == null ? "Unknown" : status, count);
-                    total += count;
-                }
-                if (total == 0) {
-                    // empty sample to show graph
-                    statusDataset.setValue("Pending", 1);
-                    statusDataset.setValue("Completed", 1);
-                    statusDataset.setValue("Verified", 1);
-                }
-            }
+        // Datasets are filled in the background once the counts arrive
+        statusDataset = new DefaultPieDataset();
+        categoryDataset = new DefaultPieDataset();
 
-            // Category counts
-            try (ResultSet rs = s.executeQuery("SELECT COALESCE(category,'Uncategorized') AS cat, COUNT(*) AS c FROM tests GROUP BY COALESCE(category,'Uncategorized')")) {
-                int total = 0;
-                while (rs.next()) {
-                    String cat = rs.getString("cat");
-                    int count = rs.getInt("c");
-                    categoryDataset.setValue(cat, count);
-                    total += count;
-                }
-                if (total == 0) {
-                    categoryDataset.setValue("Hematology", 2);
-                    categoryDataset.setValue("Serology", 1);
-                }
-            }
+        // Create charts
+        JFreeChart statusChart = ChartFactory.createPieChart("Tests by Status", statusDataset, true, true, false);
+        JFreeChart categoryChart = ChartFactory.createPieChart("Tests by Category", categoryDataset, true, true, false);
+        statusPlot = (PiePlot) statusChart.getPlot();
+        catPlot = (PiePlot) categoryChart.getPlot();
+
+        ChartPanel cp1 = new ChartPanel(statusChart);
+        cp1.setMouseWheelEnabled(true);
+        ChartPanel cp2 = new ChartPanel(categoryChart);
+        cp2.setMouseWheelEnabled(true);
+
+        charts.add(cp1);
+        charts.add(cp2);
+
+        add(top, BorderLayout.NORTH);
+        add(charts, BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bottom.setOpaque(false);
+        bottom.setBorder(BorderFactory.createEmptyBorder(4, 8, 8, 8));
+        hint = new JLabel("Loading dashboard data...", SwingConstants.LEFT);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        bottom.add(hint);
+        bottom.add(busy);
+        add(bottom, BorderLayout.SOUTH);
+
+        loader = new BackgroundLoader(busy);
+        refresh();
+
+        EventBus.bindChanges(this, "test.changed", this::applyChange); // EDT, every change
+        requeryTimer = new Timer(DBConfig.DASHBOARD_REQUERY_MS, e -> BaseDashboardFrame.requestRefresh(this));
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        requeryTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        requeryTimer.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    public void refresh() {
+        loader.load(Dashboard_Welcome_Panel::queryCounts, this::applyCounts);
+    }
+
+    /**
+     * Status and category counts, read together by queryCounts.
+     */
+    private static class Counts {
+
+        final Map<String, Integer> status;
+        final Map<String, Integer> category;
+
+        Counts(Map<String, Integer> status, Map<String, Integer> category) {
+            this.status = status;
+            this.category = category;
+        }
+    }
+
+    /**
+     * Status and category counts from test_stats (a few primary-key rows,
+     * independent of the number of tests); runs on a loader thread.
+     */
+    private static Counts queryCounts() {
+        try (Connection c = DBConnection.getConnection()) {
+            return new Counts(TestStats.counts(c, TestStats.STATUS), TestStats.counts(c, TestStats.CATEGORY));
         } catch (Exception ex) {
             ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Move one test between slices; runs on the EDT.
+     */
+    private void applyChange(ChangeEvent<TestRecordRow> change) {
+        if (sampleData || loader.isBusy()) {
+            refresh(); // nothing to adjust yet, or the counts in flight may predate this change
+            return;
+        }
+        if (change.before != null) {
+            adjust(statusDataset, statusKey(change.before), -1);
+            adjust(categoryDataset, categoryKey(change.before), -1);
+        }
+        if (change.after != null) {
+            adjust(statusDataset, statusKey(change.after), 1);
+            adjust(categoryDataset, categoryKey(change.after), 1);
+        }
+        applyColors();
+    }
+
+    private static String statusKey(TestRecordRow r) {
+        return r.status == null ? "Unknown" : r.status;
+    }
+
+    private static String categoryKey(TestRecordRow r) {
+        return r.category == null ? "Uncategorized" : r.category;
+    }
+
+    /**
+     * Add delta to one slice; a slice that drops to 0 is removed. Keys match
+     * case-insensitively, like GROUP BY on the database.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void adjust(DefaultPieDataset ds, String name, int delta) {
+        Comparable key = name;
+        for (Object k : ds.getKeys()) {
+            if (k.toString().equalsIgnoreCase(name)) {
+                key = (Comparable) k;
+                break;
+            }
+        }
+        boolean present = ds.getIndex(key) >= 0;
+        int value = (present ? ds.getValue(key).intValue() : 0) + delta;
+        if (value > 0) {
+            ds.setValue(key, value);
+        } else if (present) {
+            ds.remove(key);
+        }
+    }
+
+    /**
+     * Fill the datasets and slice colors; runs on the EDT.
+     */
+    private void applyCounts(Counts counts) {
+        sampleData = counts == null || counts.status.isEmpty() || counts.category.isEmpty();
+        statusDataset.clear();
+        categoryDataset.clear();
+        if (counts == null) {
             // Fallback dummy values
             statusDataset.setValue("Pending", 1);
             statusDataset.setValue("Completed", 1);
             statusDataset.setValue("Verified", 1);
             categoryDataset.setValue("Hematology", 2);
             categoryDataset.setValue("Serology", 1);
+        } else {
+            counts.status.forEach(statusDataset::setValue);
+            if (counts.status.isEmpty()) {
+                // empty sample to show graph
+                statusDataset.setValue("Pending", 1);
+                statusDataset.setValue("Completed", 1);
+                statusDataset.setValue("Verified", 1);
+            }
+            counts.category.forEach(categoryDataset::setValue);
+            if (counts.category.isEmpty()) {
+                categoryDataset.setValue("Hematology", 2);
+                categoryDataset.setValue("Serology", 1);
+            }
         }
+        applyColors();
+        hint.setText(counts == null ? "Dashboard data could not be loaded." : "Dashboard data loaded.");
+    }
 
-        // Create charts
-        JFreeChart statusChart = ChartFactory.createPieChart("Tests by Status", statusDataset, true, true, false);
-        JFreeChart categoryChart = ChartFactory.createPieChart("Tests by Category", categoryDataset, true, true, false);
-
+    private void applyColors() {
         // Apply custom colors for status chart (explicit mapping)
         try {
-            PiePlot statusPlot = (PiePlot) statusChart.getPlot();
             // Use distinct, contrasting colors
             statusPlot.setSectionPaint("Completed", new Color(46, 204, 113)); // green
             statusPlot.setSectionPaint("Pending", new Color(241, 196, 15));   // amber/orange
@@ -96,13 +220,11 @@ public class Dashboard_Welcome_Panel extends JPanel {
             statusPlot.setSectionPaint("Unknown", new Color(149, 165, 166));  // gray fallback
 
             // Any other statuses: assign colors by hashing key to HSB to ensure uniqueness
-            int sidx = 0;
             for (Iterator<?> it = statusDataset.getKeys().iterator(); it.hasNext();) {
                 Object key = it.next();
                 String k = key == null ? "Unknown" : key.toString();
                 if (!"Completed".equals(k) && !"Pending".equals(k) && !"Verified".equals(k) && !"Unknown".equals(k)) {
                     statusPlot.setSectionPaint(k, colorFromString(k));
-                    sidx++;
                 }
             }
         } catch (Exception ignore) {
@@ -110,7 +232,6 @@ public class Dashboard_Welcome_Panel extends JPanel {
 
         // Apply distinct colors per category using deterministic color generator
         try {
-            PiePlot catPlot = (PiePlot) categoryChart.getPlot();
             List<?> keys = categoryDataset.getKeys();
             for (int i = 0; i < keys.size(); i++) {
                 Object key = keys.get(i);
@@ -119,24 +240,6 @@ public class Dashboard_Welcome_Panel extends JPanel {
             }
         } catch (Exception ignore) {
         }
-
-        ChartPanel cp1 = new ChartPanel(statusChart);
-        cp1.setMouseWheelEnabled(true);
-        ChartPanel cp2 = new ChartPanel(categoryChart);
-        cp2.setMouseWheelEnabled(true);
-
-        charts.add(cp1);
-        charts.add(cp2);
-
-        add(top, BorderLayout.NORTH);
-        add(charts, BorderLayout.CENTER);
-
-        JPanel bottom = new JPanel(new BorderLayout());
-        bottom.setOpaque(false);
-        JLabel hint = new JLabel("Dashboard data loaded.", SwingConstants.LEFT);
-        hint.setBorder(BorderFactory.createEmptyBorder(8, 12, 12, 12));
-        bottom.add(hint, BorderLayout.WEST);
-        add(bottom, BorderLayout.SOUTH);
     }
 
     /**
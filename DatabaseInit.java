@@ -1,15 +1,58 @@
 // DatabaseInit.java
-// MySQL-only initialization; idempotent, safe to call multiple times.
+// MySQL-only initialization; runs pending schema migrations, safe to call multiple times.
 package Main;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Versioned schema setup. The applied version is kept in schema_version; on
+ * start only migrations newer than that run, so an up-to-date database costs a
+ * single SELECT. MySQL commits DDL implicitly, so a migration cannot be rolled
+ * back as a whole: each one is written to be safe to re-run if it was
+ * interrupted before its version row was recorded.
+ *
+ * To change the schema, append a migration to MIGRATIONS with the next
+ * version number; never edit one that has shipped.
+ */
 public class DatabaseInit {
 
     private static volatile boolean initialized = false;
 
+    private static final int ER_BAD_DB = 1049;          // unknown database
+    private static final int ER_NO_SUCH_TABLE = 1146;
+
+    private interface Step {
+
+        void apply(Connection c, Statement s) throws SQLException;
+    }
+
+    private static class Migration {
+
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final Migration[] MIGRATIONS = {
+        new Migration(1, "baseline tables and columns", DatabaseInit::baseline),
+        new Migration(2, "test template tables", DatabaseInit::templateTables),
+        new Migration(3, "typed date and status columns", DatabaseInit::typedColumns),
+        new Migration(4, "indexes for status filters and username lookup", DatabaseInit::basicIndexes),
+        new Migration(5, "managed secondary index set", (c, s) -> SchemaIndexes.apply(c, SchemaIndexes.V5_SECONDARY)),
+        new Migration(6, "FULLTEXT search indexes", (c, s) -> SchemaIndexes.apply(c, SchemaIndexes.V6_FULLTEXT)),
+        new Migration(7, "materialized test counts", DatabaseInit::testStats),
+        new Migration(8, "daily test rollup and change journal", DatabaseInit::dailyRollup),
+        new Migration(9, "activity log prefix search indexes", (c, s) -> SchemaIndexes.apply(c, SchemaIndexes.V9_ACTIVITY_PREFIX)),
+    };
+
     public static synchronized void init() {
         if (initialized) {
             return;
@@ -27,143 +70,23 @@ public class DatabaseInit {
 
         try {
             JdbcUrlParts parts = parseJdbcUrl(url);
-            createDatabaseIfNotExists(parts);
-
-            try (Connection c = DBConnection.getConnection(); Statement s = c.createStatement()) {
-
-                // Accounts
-                s.execute("CREATE TABLE IF NOT EXISTS accounts ("
-                        + "account_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "full_name TEXT NOT NULL,"
-                        + "username TEXT NOT NULL UNIQUE,"
-                        + "password_hash TEXT,"
-                        + "password TEXT,"
-                        + "email TEXT,"
-                        + "contact_number TEXT,"
-                        + "sex TEXT,"
-                        + "role TEXT NOT NULL,"
-                        + "profile_picture TEXT,"
-                        + "date_created TEXT,"
-                        + "last_login TEXT"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Patients
-                s.execute("CREATE TABLE IF NOT EXISTS patients ("
-                        + "patient_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "name TEXT NOT NULL,"
-                        + "sex TEXT,"
-                        + "date_of_birth TEXT,"
-                        + "contact_number TEXT,"
-                        + "email TEXT,"
-                        + "address TEXT,"
-                        + "blood_type TEXT,"
-                        + "allergies TEXT,"
-                        + "existing_conditions TEXT,"
-                        + "emergency_contact TEXT,"
-                        + "date_registered TEXT,"
-                        + "registered_by TEXT,"
-                        + "profile_picture TEXT"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Tests
-                s.execute("CREATE TABLE IF NOT EXISTS tests ("
-                        + "test_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "patient_id INT NOT NULL,"
-                        + "test_name TEXT,"
-                        + "category TEXT,"
-                        + "sample_type TEXT,"
-                        + "date_conducted TEXT,"
-                        + "technician TEXT,"
-                        + "status TEXT,"
-                        + "remarks TEXT,"
-                        + "verification_status TEXT,"
-                        + "priority_level TEXT,"
-                        + "date_verified TEXT,"
-                        + "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Parameters
-                s.execute("CREATE TABLE IF NOT EXISTS parameters ("
-                        + "parameter_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "test_id INT NOT NULL,"
-                        + "parameter_name TEXT,"
-                        + "result_value TEXT,"
-                        + "normal_range TEXT,"
-                        + "units TEXT,"
-                        + "interpretation TEXT,"
-                        + "remarks TEXT,"
-                        + "FOREIGN KEY (test_id) REFERENCES tests(test_id) ON DELETE CASCADE"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Reports
-                s.execute("CREATE TABLE IF NOT EXISTS reports ("
-                        + "report_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "test_id INT,"
-                        + "generated_by TEXT,"
-                        + "generated_date TEXT,"
-                        + "file_format TEXT,"
-                        + "printed_by TEXT,"
-                        + "FOREIGN KEY (test_id) REFERENCES tests(test_id) ON DELETE SET NULL"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Activity log
-                s.execute("CREATE TABLE IF NOT EXISTS activity_log ("
-                        + "log_id INT AUTO_INCREMENT PRIMARY KEY,"
-                        + "user TEXT,"
-                        + "action TEXT,"
-                        + "target_table TEXT,"
-                        + "target_id INT,"
-                        + "description TEXT,"
-                        + "timestamp TEXT"
-                        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
-
-                // Ensure older DBs have columns (idempotent)
-                ensureColumnExists(c, "accounts", "password_hash", "TEXT");
-                ensureColumnExists(c, "accounts", "password", "TEXT");
-                ensureColumnExists(c, "accounts", "last_login", "TEXT");
-
-                ensureColumnExists(c, "patients", "date_of_birth", "TEXT");
-                ensureColumnExists(c, "patients", "contact_number", "TEXT");
-                ensureColumnExists(c, "patients", "email", "TEXT");
-                ensureColumnExists(c, "patients", "address", "TEXT");
-                ensureColumnExists(c, "patients", "blood_type", "TEXT");
-                ensureColumnExists(c, "patients", "allergies", "TEXT");
-                ensureColumnExists(c, "patients", "existing_conditions", "TEXT");
-                ensureColumnExists(c, "patients", "emergency_contact", "TEXT");
-                ensureColumnExists(c, "patients", "date_registered", "TEXT");
-                ensureColumnExists(c, "patients", "registered_by", "TEXT");
-                ensureColumnExists(c, "patients", "profile_picture", "TEXT");
-
-                ensureColumnExists(c, "tests", "date_conducted", "TEXT");
-                ensureColumnExists(c, "tests", "technician", "TEXT");
-                ensureColumnExists(c, "tests", "status", "TEXT");
-                ensureColumnExists(c, "tests", "remarks", "TEXT");
-                ensureColumnExists(c, "tests", "verification_status", "TEXT");
-                ensureColumnExists(c, "tests", "priority_level", "TEXT");
-                ensureColumnExists(c, "tests", "date_verified", "TEXT");
-
-                ensureColumnExists(c, "activity_log", "description", "TEXT");
-
-                // Seed admin if none
-                try (ResultSet rs = s.getConnection().createStatement().executeQuery("SELECT COUNT(*) AS c FROM accounts")) {
-                    int count = rs.next() ? rs.getInt("c") : 0;
-                    if (count == 0) {
-                        String adminPassHash = PasswordUtil.hashPassword(DBConfig.DEFAULT_ADMIN_PASSWORD);
-                        String now = LocalDateTime.now().toString();
-                        String ins = "INSERT INTO accounts (full_name, username, password_hash, email, role, created_at) VALUES (?,?,?,?,?,?)";
-                        try (PreparedStatement ps = c.prepareStatement(ins)) {
-                            ps.setString(1, "Administrator");
-                            ps.setString(2, DBConfig.DEFAULT_ADMIN_USERNAME);
-                            ps.setString(3, adminPassHash);
-                            ps.setString(4, "admin@example.com");
-                            ps.setString(5, "Admin");
-                            ps.setString(6, now);
-                            ps.executeUpdate();
-                        }
-                    }
+            Connection c;
+            try {
+                c = DBConnection.getConnection();
+            } catch (SQLException e) {
+                if (e.getErrorCode() != ER_BAD_DB) {
+                    throw e;
                 }
-
-                System.out.println("Database initialized on MySQL: " + parts.database);
+                createDatabaseIfNotExists(parts);
+                c = DBConnection.getConnection();
+            }
+            try (Connection conn = c; Statement s = conn.createStatement()) {
+                int current = currentVersion(s);
+                int latest = MIGRATIONS[MIGRATIONS.length - 1].version;
+                if (current < latest) {
+                    migrate(conn, s, current);
+                }
+                System.out.println("Database initialized on MySQL: " + parts.database + " (schema v" + latest + ")");
                 initialized = true;
             }
         } catch (Exception e) {
@@ -172,21 +95,327 @@ public class DatabaseInit {
         }
     }
 
-    private static void ensureColumnExists(Connection c, String table, String column, String definition) {
-        try {
-            DatabaseMetaData meta = c.getMetaData();
-            String catalog = c.getCatalog();
-            try (ResultSet cols = meta.getColumns(catalog, null, table, column)) {
-                if (!cols.next()) {
-                    try (Statement s = c.createStatement()) {
-                        s.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
-                        System.out.println("Added missing column " + column + " to " + table + " (migration helper).");
-                    }
+    /**
+     * Highest applied migration, 0 for a database without schema_version.
+     */
+    private static int currentVersion(Statement s) throws SQLException {
+        try (ResultSet rs = s.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_NO_SUCH_TABLE || "42S02".equals(e.getSQLState())) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private static void migrate(Connection c, Statement s, int current) throws SQLException {
+        s.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "version INT PRIMARY KEY,"
+                + "description VARCHAR(200),"
+                + "applied_at DATETIME,"
+                + "duration_ms BIGINT"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        SchemaRegistry.refresh(c);
+        long total = System.currentTimeMillis();
+        for (Migration m : MIGRATIONS) {
+            if (m.version <= current) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            m.step.apply(c, s);
+            long took = System.currentTimeMillis() - start;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO schema_version (version, description, applied_at, duration_ms) VALUES (?,?,NOW(),?)")) {
+                ps.setInt(1, m.version);
+                ps.setString(2, m.description);
+                ps.setLong(3, took);
+                ps.executeUpdate();
+            }
+            // later migrations check columns/indexes against the new layout
+            SchemaRegistry.refresh(c);
+            System.out.println("Migration v" + m.version + " (" + m.description + ") applied in " + took + " ms");
+        }
+        System.out.println("Schema migrated from v" + current + " in " + (System.currentTimeMillis() - total) + " ms");
+    }
+
+    // ---- migrations ----
+    /**
+     * v1: the tables and columns DatabaseInit used to create on every start,
+     * plus the default admin account.
+     */
+    private static void baseline(Connection c, Statement s) throws SQLException {
+        // Accounts
+        s.execute("CREATE TABLE IF NOT EXISTS accounts ("
+                + "account_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "full_name TEXT NOT NULL,"
+                + "username VARCHAR(100) NOT NULL UNIQUE,"
+                + "password_hash TEXT,"
+                + "password TEXT,"
+                + "email TEXT,"
+                + "contact_number TEXT,"
+                + "sex TEXT,"
+                + "role TEXT NOT NULL,"
+                + "profile_picture TEXT,"
+                + "created_at TEXT,"
+                + "last_login TEXT"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Patients
+        s.execute("CREATE TABLE IF NOT EXISTS patients ("
+                + "patient_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "name TEXT NOT NULL,"
+                + "sex TEXT,"
+                + "date_of_birth TEXT,"
+                + "contact_number TEXT,"
+                + "email TEXT,"
+                + "address TEXT,"
+                + "blood_type TEXT,"
+                + "allergies TEXT,"
+                + "existing_conditions TEXT,"
+                + "emergency_contact TEXT,"
+                + "date_registered TEXT,"
+                + "registered_by TEXT,"
+                + "profile_picture TEXT"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Tests
+        s.execute("CREATE TABLE IF NOT EXISTS tests ("
+                + "test_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "patient_id INT NOT NULL,"
+                + "test_name TEXT,"
+                + "category TEXT,"
+                + "sample_type TEXT,"
+                + "date_conducted TEXT,"
+                + "technician TEXT,"
+                + "status TEXT,"
+                + "remarks TEXT,"
+                + "verification_status TEXT,"
+                + "priority_level TEXT,"
+                + "date_verified TEXT,"
+                + "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Parameters
+        s.execute("CREATE TABLE IF NOT EXISTS parameters ("
+                + "parameter_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "test_id INT NOT NULL,"
+                + "parameter_name TEXT,"
+                + "result_value TEXT,"
+                + "normal_range TEXT,"
+                + "units TEXT,"
+                + "interpretation TEXT,"
+                + "remarks TEXT,"
+                + "FOREIGN KEY (test_id) REFERENCES tests(test_id) ON DELETE CASCADE"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Reports
+        s.execute("CREATE TABLE IF NOT EXISTS reports ("
+                + "report_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "test_id INT,"
+                + "generated_by TEXT,"
+                + "generated_date TEXT,"
+                + "file_format TEXT,"
+                + "printed_by TEXT,"
+                + "FOREIGN KEY (test_id) REFERENCES tests(test_id) ON DELETE SET NULL"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Activity log
+        s.execute("CREATE TABLE IF NOT EXISTS activity_log ("
+                + "log_id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "user TEXT,"
+                + "action TEXT,"
+                + "target_table TEXT,"
+                + "target_id INT,"
+                + "description TEXT,"
+                + "timestamp TEXT"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+
+        // Ensure older DBs have columns (idempotent); answered from SchemaRegistry
+        SchemaRegistry.refresh(c);
+        ensureColumnExists(c, "accounts", "password_hash", "TEXT");
+        ensureColumnExists(c, "accounts", "password", "TEXT");
+        ensureColumnExists(c, "accounts", "created_at", "TEXT");
+        ensureColumnExists(c, "accounts", "last_login", "TEXT");
+
+        ensureColumnExists(c, "patients", "date_of_birth", "TEXT");
+        ensureColumnExists(c, "patients", "contact_number", "TEXT");
+        ensureColumnExists(c, "patients", "email", "TEXT");
+        ensureColumnExists(c, "patients", "address", "TEXT");
+        ensureColumnExists(c, "patients", "blood_type", "TEXT");
+        ensureColumnExists(c, "patients", "allergies", "TEXT");
+        ensureColumnExists(c, "patients", "existing_conditions", "TEXT");
+        ensureColumnExists(c, "patients", "emergency_contact", "TEXT");
+        ensureColumnExists(c, "patients", "date_registered", "TEXT");
+        ensureColumnExists(c, "patients", "registered_by", "TEXT");
+        ensureColumnExists(c, "patients", "profile_picture", "TEXT");
+
+        ensureColumnExists(c, "tests", "date_conducted", "TEXT");
+        ensureColumnExists(c, "tests", "technician", "TEXT");
+        ensureColumnExists(c, "tests", "status", "TEXT");
+        ensureColumnExists(c, "tests", "remarks", "TEXT");
+        ensureColumnExists(c, "tests", "verification_status", "TEXT");
+        ensureColumnExists(c, "tests", "priority_level", "TEXT");
+        ensureColumnExists(c, "tests", "date_verified", "TEXT");
+
+        ensureColumnExists(c, "activity_log", "description", "TEXT");
+
+        // Seed admin if none
+        try (ResultSet rs = s.executeQuery("SELECT COUNT(*) AS c FROM accounts")) {
+            int count = rs.next() ? rs.getInt("c") : 0;
+            if (count == 0) {
+                String adminPassHash = PasswordUtil.hashPassword(DBConfig.DEFAULT_ADMIN_PASSWORD);
+                String now = LocalDateTime.now().toString();
+                String ins = "INSERT INTO accounts (full_name, username, password_hash, email, role, created_at) VALUES (?,?,?,?,?,?)";
+                try (PreparedStatement ps = c.prepareStatement(ins)) {
+                    ps.setString(1, "Administrator");
+                    ps.setString(2, DBConfig.DEFAULT_ADMIN_USERNAME);
+                    ps.setString(3, adminPassHash);
+                    ps.setString(4, "admin@example.com");
+                    ps.setString(5, "Admin");
+                    ps.setString(6, now);
+                    ps.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * v2: tables used by TemplateDAO (previously only in schema_mysql.sql).
+     */
+    private static void templateTables(Connection c, Statement s) throws SQLException {
+        s.execute("CREATE TABLE IF NOT EXISTS test_templates ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "name VARCHAR(255) NOT NULL UNIQUE,"
+                + "category VARCHAR(255),"
+                + "description TEXT"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        s.execute("CREATE TABLE IF NOT EXISTS template_parameters ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "template_id INT NOT NULL,"
+                + "param_name VARCHAR(255) NOT NULL,"
+                + "units VARCHAR(50),"
+                + "reference_range VARCHAR(100),"
+                + "critical_values TEXT,"
+                + "FOREIGN KEY (template_id) REFERENCES test_templates(id) ON DELETE CASCADE"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+    }
+
+    /**
+     * v3: VARCHAR/DATE/DATETIME instead of TEXT for the columns that are
+     * filtered, grouped or sorted on. Values that would not convert are
+     * cleaned first (over-long text cut, unparseable dates set to NULL), then
+     * each table is rebuilt once with all its changes in a single ALTER.
+     */
+    private static void typedColumns(Connection c, Statement s) throws SQLException {
+        truncate(s, "tests", "status", 20);
+        truncate(s, "tests", "category", 100);
+        truncate(s, "tests", "test_name", 255);
+        truncate(s, "tests", "technician", 255);
+        cleanDate(s, "tests", "date_conducted");
+        cleanDate(s, "tests", "date_verified");
+        s.execute("ALTER TABLE tests"
+                + " MODIFY status VARCHAR(20),"
+                + " MODIFY category VARCHAR(100),"
+                + " MODIFY test_name VARCHAR(255),"
+                + " MODIFY technician VARCHAR(255),"
+                + " MODIFY date_conducted DATE NULL,"
+                + " MODIFY date_verified DATE NULL");
+
+        truncate(s, "patients", "name", 255);
+        truncate(s, "patients", "sex", 20);
+        cleanDate(s, "patients", "date_of_birth");
+        cleanDate(s, "patients", "date_registered");
+        s.execute("ALTER TABLE patients"
+                + " MODIFY name VARCHAR(255) NOT NULL,"
+                + " MODIFY sex VARCHAR(20),"
+                + " MODIFY date_of_birth DATE NULL,"
+                + " MODIFY date_registered DATE NULL");
+
+        truncate(s, "accounts", "role", 20);
+        s.execute("ALTER TABLE accounts"
+                + " MODIFY username VARCHAR(100) NOT NULL,"
+                + " MODIFY role VARCHAR(20) NOT NULL");
+
+        truncate(s, "activity_log", "user", 100);
+        truncate(s, "activity_log", "action", 100);
+        truncate(s, "activity_log", "target_table", 64);
+        // ISO strings from LocalDateTime.toString(): keep up to milliseconds, space instead of 'T'
+        s.executeUpdate("UPDATE activity_log SET timestamp = CASE"
+                + " WHEN timestamp REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}[T ][0-9]{2}:[0-9]{2}'"
+                + " THEN REPLACE(LEFT(timestamp, 23), 'T', ' ') ELSE NULL END"
+                + " WHERE timestamp IS NOT NULL");
+        s.execute("ALTER TABLE activity_log"
+                + " MODIFY user VARCHAR(100),"
+                + " MODIFY action VARCHAR(100),"
+                + " MODIFY target_table VARCHAR(64),"
+                + " MODIFY timestamp DATETIME(3) NULL");
+    }
+
+    /**
+     * v4: indexes for the status filter / GROUP BY and the login lookup.
+     */
+    private static void basicIndexes(Connection c, Statement s) throws SQLException {
+        createIndexIfMissing(c, s, "tests", "idx_tests_status", "status");
+        createIndexIfMissing(c, s, "accounts", "idx_accounts_username", "username");
+    }
+
+    /**
+     * v7: test_stats, filled from the existing rows (see TestStats).
+     */
+    private static void testStats(Connection c, Statement s) throws SQLException {
+        TestStats.createTable(s);
+        TestStats.rebuild(c);
+    }
+
+    /**
+     * v8: test_daily_rollup and its change journal (see TestRollupEngine).
+     */
+    private static void dailyRollup(Connection c, Statement s) throws SQLException {
+        TestRollupEngine.createTables(s);
+        TestRollupEngine.rebuild(c);
+    }
+
+    // ---- helpers ----
+    /**
+     * Add the column if SchemaRegistry does not know it.
+     */
+    private static void ensureColumnExists(Connection c, String table, String column, String definition) throws SQLException {
+        if (SchemaRegistry.hasColumn(table, column)) {
+            return;
+        }
+        try (Statement s = c.createStatement()) {
+            s.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            System.out.println("Added missing column " + column + " to " + table + " (migration helper).");
+        }
+    }
+
+    private static void truncate(Statement s, String table, String column, int length) throws SQLException {
+        s.executeUpdate("UPDATE " + table + " SET " + column + " = LEFT(" + column + ", " + length + ")"
+                + " WHERE CHAR_LENGTH(" + column + ") > " + length);
+    }
+
+    /**
+     * Keep the yyyy-MM-dd part of date-like text, NULL out everything else.
+     */
+    private static void cleanDate(Statement s, String table, String column) throws SQLException {
+        s.executeUpdate("UPDATE " + table + " SET " + column + " = CASE"
+                + " WHEN " + column + " REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}' THEN LEFT(" + column + ", 10) ELSE NULL END"
+                + " WHERE " + column + " IS NOT NULL");
+    }
+
+    private static void createIndexIfMissing(Connection c, Statement s, String table, String name, String columns) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM information_schema.STATISTICS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        s.execute("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
     }
 
     private static JdbcUrlParts parseJdbcUrl(String url) {
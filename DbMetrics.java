@@ -0,0 +1,560 @@
+// DbMetrics.java
+// Statement latency histograms, connection wait times and the slow-query log.
+package Main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JDBC instrumentation. ConnectionPool wraps every statement it hands out
+ * with wrap(), and reports how long each borrow() waited, so all DAO calls are
+ * measured without touching the DAOs:
+ *
+ * - per statement shape (the SQL with literals replaced by ?, IN lists
+ *   collapsed): a latency histogram, rows returned or affected, error count
+ *   and the last error message
+ * - connection wait time histogram and borrow timeouts
+ * - a slow-query log (DB_SLOW_QUERY_LOG) with the elapsed time, thread and
+ *   the calling application frames for every statement slower than
+ *   DB_SLOW_QUERY_MS; the threshold can be changed at runtime over JMX
+ *
+ * The numbers are published as the MBean Main:type=DbMetrics and written to
+ * DB_METRICS_REPORT_FILE every DB_METRICS_REPORT_MS and on shutdown.
+ * Percentiles come from fixed histogram buckets, so they are upper bounds.
+ * DB_METRICS_ENABLED = false turns the statement wrapping off.
+ */
+public class DbMetrics implements DbMetricsMBean {
+
+    // histogram bucket upper bounds; the last bucket is everything slower
+    private static final long[] BUCKET_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    private static final int MAX_SHAPES = 500;
+    private static final int MAX_SHAPE_LENGTH = 240;
+    private static final int MAX_RAW_SQL_CACHE = 5000;
+    private static final int CALLER_FRAMES = 3;
+    private static final String OTHER_SHAPE = "(other statements)";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final DbMetrics INSTANCE = new DbMetrics();
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Map<String, Shape> byRawSql = new ConcurrentHashMap<>();
+    private final Histogram connectionWait = new Histogram();
+    private final AtomicLong connectionTimeouts = new AtomicLong();
+    private final AtomicLong slowQueries = new AtomicLong();
+    private volatile long slowQueryThresholdMs = DBConfig.DB_SLOW_QUERY_MS;
+    private volatile ConnectionPool pool;
+    private ScheduledExecutorService reporter;
+    private boolean registered = false;
+
+    private DbMetrics() {
+    }
+
+    public static DbMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register the MBean and start the periodic report; called by
+     * DBConnection when it creates the pool.
+     */
+    static synchronized void start(ConnectionPool pool) {
+        INSTANCE.pool = pool;
+        if (!INSTANCE.registered) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(INSTANCE, new ObjectName("Main:type=DbMetrics"));
+                INSTANCE.registered = true;
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        if (INSTANCE.reporter == null && DBConfig.DB_METRICS_REPORT_MS > 0) {
+            INSTANCE.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DB-Metrics-Report");
+                t.setDaemon(true);
+                return t;
+            });
+            INSTANCE.reporter.scheduleWithFixedDelay(INSTANCE::writeReport,
+                    DBConfig.DB_METRICS_REPORT_MS, DBConfig.DB_METRICS_REPORT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic report and write a final one.
+     */
+    static synchronized void stop() {
+        if (INSTANCE.reporter != null) {
+            INSTANCE.reporter.shutdownNow();
+            INSTANCE.reporter = null;
+            INSTANCE.writeReport();
+        }
+        INSTANCE.pool = null;
+    }
+
+    // ---- recording ----
+
+    static void recordConnectionWait(long nanos, boolean obtained) {
+        INSTANCE.connectionWait.record(nanos);
+        if (!obtained) {
+            INSTANCE.connectionTimeouts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wrap a statement so its executions are measured. sql is the prepared
+     * SQL, or null for a plain Statement (the SQL is then taken from each
+     * execute call).
+     */
+    static Statement wrap(Statement statement, String sql) {
+        if (!DBConfig.DB_METRICS_ENABLED || statement == null) {
+            return statement;
+        }
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(DbMetrics.class.getClassLoader(), new Class<?>[]{type},
+                new StatementHandler(statement, sql));
+    }
+
+    private Shape shapeOf(String sql) {
+        if (sql == null) {
+            sql = "(unknown)";
+        }
+        Shape s = byRawSql.get(sql);
+        if (s != null) {
+            return s;
+        }
+        String key = normalize(sql);
+        if (shapes.size() >= MAX_SHAPES && !shapes.containsKey(key)) {
+            key = OTHER_SHAPE; // e.g. a caller concatenating values into the SQL
+        }
+        s = shapes.computeIfAbsent(key, Shape::new);
+        if (byRawSql.size() >= MAX_RAW_SQL_CACHE) {
+            byRawSql.clear();
+        }
+        byRawSql.put(sql, s);
+        return s;
+    }
+
+    static String normalize(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = IN_LIST.matcher(s).replaceAll("(?, ...)");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return s.length() > MAX_SHAPE_LENGTH ? s.substring(0, MAX_SHAPE_LENGTH) + "..." : s;
+    }
+
+    private void recordExecution(Shape shape, long nanos, long rows, SQLException error) {
+        shape.latency.record(nanos);
+        if (rows > 0) {
+            shape.rows.addAndGet(rows);
+        }
+        if (error != null) {
+            shape.errors.incrementAndGet();
+            shape.lastError = error.getMessage();
+        }
+        long ms = nanos / 1_000_000;
+        if (ms >= slowQueryThresholdMs) {
+            slowQueries.incrementAndGet();
+            logSlowQuery(shape, ms, rows, error);
+        }
+    }
+
+    private synchronized void logSlowQuery(Shape shape, long ms, long rows, SQLException error) {
+        String line = LocalDateTime.now().format(TIMESTAMP_FORMAT)
+                + "\t" + ms + " ms"
+                + "\t" + (rows >= 0 ? rows + " rows" : "query")
+                + "\t" + Thread.currentThread().getName()
+                + "\t" + callers()
+                + "\t" + shape.sql
+                + (error != null ? "\tERROR " + error.getMessage() : "");
+        Path file = Path.of(DBConfig.DB_SLOW_QUERY_LOG);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(line);
+                w.newLine();
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not write slow query log: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * The innermost application frames that issued the statement, e.g.
+     * "TestRecordDAO.listRowsPage:72 < Test_Record_List_Panel.lambda$load$3:210".
+     */
+    private static String callers() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("Main.") && !isInfrastructure(f.getClassName()))
+                .limit(CALLER_FRAMES)
+                .map(f -> f.getClassName().substring(5) + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .collect(Collectors.joining(" < ")));
+    }
+
+    private static boolean isInfrastructure(String className) {
+        return className.startsWith("Main.DbMetrics") || className.startsWith("Main.ConnectionPool")
+                || className.startsWith("Main.StatementCache") || className.startsWith("Main.UnitOfWork")
+                || className.equals("Main.DBConnection");
+    }
+
+    // ---- MBean ----
+
+    @Override
+    public long getStatementCount() {
+        return shapes.values().stream().mapToLong(s -> s.latency.count.get()).sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return shapes.values().stream().mapToLong(s -> s.errors.get()).sum() + connectionTimeouts.get();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.get();
+    }
+
+    @Override
+    public long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+
+    @Override
+    public void setSlowQueryThresholdMs(long ms) {
+        slowQueryThresholdMs = Math.max(0, ms);
+    }
+
+    @Override
+    public long getConnectionWaitCount() {
+        return connectionWait.count.get();
+    }
+
+    @Override
+    public double getConnectionWaitP95Ms() {
+        return connectionWait.percentileMs(0.95);
+    }
+
+    @Override
+    public double getConnectionWaitMaxMs() {
+        return connectionWait.maxNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public long getConnectionTimeoutCount() {
+        return connectionTimeouts.get();
+    }
+
+    @Override
+    public int getPoolActiveCount() {
+        ConnectionPool p = pool;
+        return p != null ? p.getActiveCount() : 0;
+    }
+
+    @Override
+    public int getPoolIdleCount() {
+        ConnectionPool p = pool;
+        return p != null ? p.getIdleCount() : 0;
+    }
+
+    @Override
+    public String[] getStatementShapes() {
+        return sortedShapes().stream().map(Shape::toLine).toArray(String[]::new);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("DB metrics at ").append(LocalDateTime.now().format(TIMESTAMP_FORMAT)).append('\n');
+        ConnectionPool p = pool;
+        if (p != null) {
+            sb.append(String.format("pool: %d active, %d idle, %d open, max %d%n",
+                    p.getActiveCount(), p.getIdleCount(), p.getTotalCount(), p.getMaxSize()));
+        }
+        sb.append(String.format("connection wait: %d borrows, p50 %.0f ms, p95 %.0f ms, max %.1f ms, %d timeouts%n",
+                connectionWait.count.get(), connectionWait.percentileMs(0.5), connectionWait.percentileMs(0.95),
+                getConnectionWaitMaxMs(), connectionTimeouts.get()));
+        sb.append(String.format("statements: %d executed, %d errors, %d slower than %d ms%n",
+                getStatementCount(), getErrorCount() - connectionTimeouts.get(), slowQueries.get(), slowQueryThresholdMs));
+        sb.append(StatementCache.summary()).append('\n');
+        sb.append('\n').append(Shape.HEADER).append('\n');
+        for (Shape s : sortedShapes()) {
+            sb.append(s.toLine()).append('\n');
+            if (s.lastError != null) {
+                sb.append("    last error: ").append(s.lastError).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        shapes.clear();
+        byRawSql.clear();
+        connectionWait.reset();
+        connectionTimeouts.set(0);
+        slowQueries.set(0);
+    }
+
+    private List<Shape> sortedShapes() {
+        List<Shape> list = new ArrayList<>(shapes.values());
+        list.sort(Comparator.comparingLong((Shape s) -> s.latency.totalNanos.get()).reversed());
+        return list;
+    }
+
+    /**
+     * Replace the report file (write to a temp file, then move).
+     */
+    private void writeReport() {
+        Path file = Path.of(DBConfig.DB_METRICS_REPORT_FILE);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, report(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Could not write DB metrics report: " + ex.getMessage());
+        }
+    }
+
+    // ---- data ----
+
+    private static class Histogram {
+
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MS.length + 1);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long ms = nanos / 1_000_000;
+            int i = 0;
+            while (i < BUCKET_MS.length && ms >= BUCKET_MS[i]) {
+                i++;
+            }
+            buckets.incrementAndGet(i);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Upper bound of the bucket holding the p-th percentile; the max for
+         * the open-ended last bucket.
+         */
+        double percentileMs(double p) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return i < BUCKET_MS.length ? BUCKET_MS[i] : maxNanos.get() / 1_000_000.0;
+                }
+            }
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+
+    private static class Shape {
+
+        static final String HEADER = String.format("%8s %6s %9s %7s %7s %7s %9s %10s  %s",
+                "count", "errors", "avg ms", "p50", "p95", "p99", "max ms", "rows", "statement");
+
+        final String sql;
+        final Histogram latency = new Histogram();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        volatile String lastError;
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        String toLine() {
+            long n = latency.count.get();
+            return String.format("%8d %6d %9.1f %7.0f %7.0f %7.0f %9.1f %10d  %s",
+                    n, errors.get(), n > 0 ? latency.totalNanos.get() / 1_000_000.0 / n : 0.0,
+                    latency.percentileMs(0.5), latency.percentileMs(0.95), latency.percentileMs(0.99),
+                    latency.maxNanos.get() / 1_000_000.0, rows.get(), sql);
+        }
+    }
+
+    /**
+     * Times the execute* calls of one statement; result sets are wrapped to
+     * count the rows read.
+     */
+    private static class StatementHandler implements InvocationHandler {
+
+        final Statement target;
+        final String sql;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return target.toString();
+                default:
+                    break;
+            }
+            if (!name.startsWith("execute")) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            Shape shape = INSTANCE.shapeOf(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                INSTANCE.recordExecution(shape, System.nanoTime() - start, 0, cause instanceof SQLException ? (SQLException) cause : null);
+                throw cause;
+            }
+            long nanos = System.nanoTime() - start;
+            if (result instanceof ResultSet) {
+                INSTANCE.recordExecution(shape, nanos, -1, null);
+                return Proxy.newProxyInstance(DbMetrics.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler((ResultSet) result, shape));
+            }
+            INSTANCE.recordExecution(shape, nanos, affectedRows(result), null);
+            return result;
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            long sum = 0;
+            if (result instanceof int[]) {
+                for (int n : (int[]) result) {
+                    sum += Math.max(0, n); // SUCCESS_NO_INFO is negative
+                }
+            } else if (result instanceof long[]) {
+                for (long n : (long[]) result) {
+                    sum += Math.max(0, n);
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Counts next() and adds the total to the shape once the result set is
+     * exhausted or closed.
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+
+        final ResultSet target;
+        final Shape shape;
+        long rows = 0;
+        boolean recorded = false;
+
+        ResultSetHandler(ResultSet target, Shape shape) {
+            this.target = target;
+            this.shape = shape;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    recordRows();
+                    break;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if ("next".equals(method.getName())) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    recordRows();
+                }
+            }
+            return result;
+        }
+
+        private void recordRows() {
+            if (!recorded) {
+                recorded = true;
+                shape.rows.addAndGet(rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// DbMetricsMBean.java
+// JMX view of DbMetrics (Main:type=DbMetrics in JConsole / VisualVM).
+package Main;
+
+public interface DbMetricsMBean {
+
+    long getStatementCount();
+
+    long getErrorCount();
+
+    long getSlowQueryCount();
+
+    long getSlowQueryThresholdMs();
+
+    void setSlowQueryThresholdMs(long ms);
+
+    long getConnectionWaitCount();
+
+    double getConnectionWaitP95Ms();
+
+    double getConnectionWaitMaxMs();
+
+    long getConnectionTimeoutCount();
+
+    int getPoolActiveCount();
+
+    int getPoolIdleCount();
+
+    /**
+     * One line per statement shape, slowest total time first.
+     */
+    String[] getStatementShapes();
+
+    String report();
+
+    void reset();
+}
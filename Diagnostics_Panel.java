@@ -0,0 +1,104 @@
+// Diagnostics_Panel.java
+// Admin view of UI freezes (EdtWatchdog) and database metrics (DbMetrics).
+package Main;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * UI freezes ranked by total stalled time (panel, DAO method, event), the
+ * most recent stalls, and the DbMetrics report with the EventBus listener
+ * counts. Everything shown is kept in memory, so refreshing does not touch
+ * the database; new stalls mark the card for refresh. The database report
+ * can be long (every statement shape with its histogram), so its text is
+ * built on a BackgroundLoader and only set on the EDT.
+ */
+public class Diagnostics_Panel extends JPanel implements Refreshable {
+
+    private final DefaultTableModel ranking = readOnlyModel("Panel", "DAO method", "Event", "Count", "Total ms", "Max ms", "With JDBC");
+    private final DefaultTableModel recent = readOnlyModel("Time", "ms", "Panel", "DAO method", "JDBC", "Event");
+    private final JTextArea database = new JTextArea();
+    private final JLabel lblStatus = new JLabel();
+    private final BackgroundLoader loader;
+
+    public Diagnostics_Panel() {
+        setLayout(new BorderLayout());
+        setBackground(UiTheme.BG);
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.setBackground(UiTheme.BG);
+        JLabel title = new JLabel("Diagnostics");
+        title.setFont(UiTheme.HEADER_FONT.deriveFont(22f));
+        JButton btnRefresh = new JButton("Refresh");
+        btnRefresh.addActionListener(e -> refresh());
+        JButton btnClear = new JButton("Clear");
+        btnClear.addActionListener(e -> clear());
+        top.add(title);
+        top.add(btnRefresh);
+        top.add(btnClear);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        top.add(busy);
+        loader = new BackgroundLoader(busy);
+        add(top, BorderLayout.NORTH);
+
+        database.setEditable(false);
+        database.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("UI freezes", new JScrollPane(new JTable(ranking)));
+        tabs.addTab("Recent freezes", new JScrollPane(new JTable(recent)));
+        tabs.addTab("Database", new JScrollPane(database));
+        add(tabs, BorderLayout.CENTER);
+
+        lblStatus.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        add(lblStatus, BorderLayout.SOUTH);
+
+        EventBus.bind(this, "edt.stall", (evt, payload) -> BaseDashboardFrame.requestRefresh(this)); // EDT, coalesced
+        refresh();
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void refresh() {
+        ranking.setRowCount(0);
+        recent.setRowCount(0);
+        EdtWatchdog watchdog = EdtWatchdog.get();
+        if (watchdog != null) {
+            for (EdtWatchdog.Summary s : watchdog.summary()) {
+                ranking.addRow(new Object[]{s.panel, s.daoMethod, s.event, s.count, s.totalMillis, s.maxMillis, s.jdbcCount});
+            }
+            List<EdtWatchdog.Stall> stalls = watchdog.recent();
+            for (EdtWatchdog.Stall s : stalls) {
+                recent.addRow(new Object[]{s.time, s.millis, s.panel, s.daoMethod,
+                    s.samples > 0 ? (100 * s.jdbcSamples / s.samples) + "%" : "-", s.event});
+            }
+            lblStatus.setText(stalls.size() + " recent freezes of " + DBConfig.EDT_STALL_THRESHOLD_MS
+                    + " ms or more; also logged to " + DBConfig.EDT_STALL_LOG + ".");
+        } else {
+            lblStatus.setText("EDT watchdog is not installed.");
+        }
+        loader.load(() -> DbMetrics.get().report() + "\n" + PatientCache.summary() + "\n" + AccountDirectory.summary()
+                + "\n" + TemplateCache.summary()
+                + "\nEventBus listeners: " + EventBus.listenerCounts(), text -> {
+                    database.setText(text);
+                    database.setCaretPosition(0);
+                });
+    }
+
+    private void clear() {
+        EdtWatchdog watchdog = EdtWatchdog.get();
+        if (watchdog != null) {
+            watchdog.clear();
+        }
+        DbMetrics.get().reset();
+        refresh();
+    }
+}
@@ -0,0 +1,374 @@
+// EdtWatchdog.java
+// Detects long-running events on the Event Dispatch Thread and attributes them.
+package Main;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * EDT stall watchdog. install() pushes an EventQueue that notes when each
+ * event starts and ends, and starts a sampler thread that takes a stack trace
+ * of the EDT every EDT_SAMPLE_INTERVAL_MS while an event is running. An event
+ * that runs EDT_STALL_THRESHOLD_MS or longer is a stall; from its samples it
+ * gets:
+ *
+ * - the panel: innermost application Component class on the stack
+ *   (inner classes such as renderers count as their outer class)
+ * - the DAO method: innermost application *DAO frame
+ * - JDBC: the share of samples with java.sql / the driver / the pool on the
+ *   stack
+ *
+ * Stalls are appended to EDT_STALL_LOG (rolled over to .1 at
+ * EDT_STALL_LOG_MAX_BYTES), kept in memory (recent() and a ranking by total
+ * stalled time, summary()) for the admin Diagnostics card, and announced
+ * with an "edt.stall" event. Events nested in a modal dialog's event loop are
+ * measured on their own. The event that opened the dialog is charged only for
+ * its own work: the time its nested loop spent waiting for or running other
+ * events is subtracted, and samples taken while that loop waits are dropped.
+ */
+public class EdtWatchdog {
+
+    private static final int RECENT_LIMIT = 200;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static EdtWatchdog instance = null;
+
+    private final long thresholdNanos = DBConfig.EDT_STALL_THRESHOLD_MS * 1_000_000L;
+    private final Deque<Dispatch> dispatching = new ArrayDeque<>(); // guarded by "this"; nested loops push on top
+    private final Deque<Stall> recent = new ArrayDeque<>();          // guarded by "this"
+    private final Map<String, Summary> summaries = new LinkedHashMap<>(); // guarded by "this"
+    private final Map<String, Boolean> componentClasses = new ConcurrentHashMap<>();
+    private volatile Thread edt;
+    private final ExecutorService logWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EDT-Watchdog-Log");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private EdtWatchdog() {
+    }
+
+    /**
+     * Start watching the EDT; later calls do nothing.
+     */
+    public static synchronized void install() {
+        if (instance != null) {
+            return;
+        }
+        instance = new EdtWatchdog();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(instance.new WatchedQueue());
+        Thread sampler = new Thread(instance::sampleLoop, "EDT-Watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * The installed watchdog, or null.
+     */
+    public static synchronized EdtWatchdog get() {
+        return instance;
+    }
+
+    /**
+     * One event being dispatched.
+     */
+    private static class Dispatch {
+
+        final long start = System.nanoTime();
+        final String event;
+        long nestedNanos = 0; // in a nested event loop (e.g. JOptionPane), waiting or running its events
+        boolean waiting = false; // that nested loop is waiting for the next event
+        int samples = 0;
+        int jdbcSamples = 0;
+        final Map<String, Integer> panels = new HashMap<>();
+        final Map<String, Integer> daoMethods = new HashMap<>();
+
+        Dispatch(String event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * One event that ran past the threshold.
+     */
+    public static class Stall {
+
+        public final String time;
+        public final long millis;
+        public final String event;
+        public final String panel;
+        public final String daoMethod;
+        public final int samples;
+        public final int jdbcSamples;
+
+        Stall(String time, long millis, String event, String panel, String daoMethod, int samples, int jdbcSamples) {
+            this.time = time;
+            this.millis = millis;
+            this.event = event;
+            this.panel = panel;
+            this.daoMethod = daoMethod;
+            this.samples = samples;
+            this.jdbcSamples = jdbcSamples;
+        }
+
+        public boolean jdbc() {
+            return jdbcSamples > 0;
+        }
+
+        String toLine() {
+            return time + "\t" + millis + " ms\t" + panel + "\t" + daoMethod + "\t"
+                    + (samples > 0 ? "jdbc " + (100 * jdbcSamples / samples) + "% of " + samples + " samples" : "not sampled")
+                    + "\t" + event;
+        }
+    }
+
+    /**
+     * Stalls with the same panel, DAO method and event type.
+     */
+    public static class Summary {
+
+        public final String panel;
+        public final String daoMethod;
+        public final String event;
+        public int count;
+        public long totalMillis;
+        public long maxMillis;
+        public int jdbcCount;
+
+        Summary(String panel, String daoMethod, String event) {
+            this.panel = panel;
+            this.daoMethod = daoMethod;
+            this.event = event;
+        }
+    }
+
+    private class WatchedQueue extends EventQueue {
+
+        @Override
+        protected void dispatchEvent(AWTEvent e) {
+            Dispatch d = new Dispatch(describe(e));
+            synchronized (EdtWatchdog.this) {
+                edt = Thread.currentThread(); // EventQueue may replace the EDT after an uncaught exception
+                dispatching.push(d);
+            }
+            try {
+                super.dispatchEvent(e);
+            } finally {
+                long nanos = System.nanoTime() - d.start;
+                long own;
+                synchronized (EdtWatchdog.this) {
+                    dispatching.remove(d);
+                    Dispatch outer = dispatching.peek();
+                    if (outer != null) {
+                        outer.nestedNanos += nanos; // ran inside the outer event's nested loop
+                    }
+                    own = nanos - d.nestedNanos;
+                }
+                if (own >= thresholdNanos) {
+                    record(d, own);
+                }
+            }
+        }
+
+        /**
+         * Called on the EDT by every event loop; while an event is being
+         * dispatched this is its nested loop waiting, which is not the
+         * event's own time.
+         */
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            Dispatch d;
+            synchronized (EdtWatchdog.this) {
+                d = Thread.currentThread() == edt ? dispatching.peek() : null;
+                if (d != null) {
+                    d.waiting = true;
+                }
+            }
+            if (d == null) {
+                return super.getNextEvent();
+            }
+            long start = System.nanoTime();
+            try {
+                return super.getNextEvent();
+            } finally {
+                synchronized (EdtWatchdog.this) {
+                    d.waiting = false;
+                    d.nestedNanos += System.nanoTime() - start;
+                }
+            }
+        }
+    }
+
+    private static String describe(AWTEvent e) {
+        Object source = e.getSource();
+        return e.getClass().getSimpleName() + (source != null ? " on " + source.getClass().getSimpleName() : "");
+    }
+
+    private void sampleLoop() {
+        while (true) {
+            try {
+                Thread.sleep(DBConfig.EDT_SAMPLE_INTERVAL_MS);
+                Dispatch d;
+                Thread t;
+                synchronized (this) {
+                    d = dispatching.peek();
+                    t = edt;
+                    if (d != null && d.waiting) {
+                        d = null; // idle in a nested loop: not the event's work
+                    }
+                }
+                if (d != null && t != null && System.nanoTime() - d.start >= DBConfig.EDT_SAMPLE_INTERVAL_MS * 1_000_000L) {
+                    sample(d, t.getStackTrace());
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void sample(Dispatch d, StackTraceElement[] stack) {
+        boolean jdbc = false;
+        String panel = null;
+        String dao = null;
+        for (StackTraceElement f : stack) {
+            String cls = f.getClassName();
+            if (cls.startsWith("java.sql.") || cls.startsWith("com.mysql.") || cls.equals("Main.ConnectionPool")
+                    || cls.startsWith("Main.ConnectionPool$") || cls.startsWith("Main.StatementCache") || cls.startsWith("Main.DbMetrics")) {
+                jdbc = true;
+            }
+            if (!cls.startsWith("Main.") || cls.startsWith("Main.EdtWatchdog")) {
+                continue;
+            }
+            String outer = cls.substring(5, cls.indexOf('$') > 0 ? cls.indexOf('$') : cls.length());
+            if (dao == null && outer.endsWith("DAO")) {
+                dao = outer + "." + f.getMethodName();
+            }
+            if (panel == null && isComponent(cls.substring(0, 5) + outer)) {
+                panel = outer;
+            }
+        }
+        synchronized (this) {
+            d.samples++;
+            if (jdbc) {
+                d.jdbcSamples++;
+            }
+            if (panel != null) {
+                d.panels.merge(panel, 1, Integer::sum);
+            }
+            if (dao != null) {
+                d.daoMethods.merge(dao, 1, Integer::sum);
+            }
+        }
+    }
+
+    private boolean isComponent(String className) {
+        return componentClasses.computeIfAbsent(className, n -> {
+            try {
+                return Component.class.isAssignableFrom(Class.forName(n, false, EdtWatchdog.class.getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    private void record(Dispatch d, long nanos) {
+        Stall s;
+        synchronized (this) {
+            s = new Stall(LocalDateTime.now().format(TIMESTAMP_FORMAT), nanos / 1_000_000, d.event,
+                    mostSampled(d.panels, "(unknown panel)"), mostSampled(d.daoMethods, "-"), d.samples, d.jdbcSamples);
+            recent.addFirst(s);
+            while (recent.size() > RECENT_LIMIT) {
+                recent.removeLast();
+            }
+            String key = s.panel + "\t" + s.daoMethod + "\t" + s.event;
+            Summary sum = summaries.computeIfAbsent(key, k -> new Summary(s.panel, s.daoMethod, s.event));
+            sum.count++;
+            sum.totalMillis += s.millis;
+            sum.maxMillis = Math.max(sum.maxMillis, s.millis);
+            if (s.jdbc()) {
+                sum.jdbcCount++;
+            }
+        }
+        // not on the EDT: that is where record() runs
+        logWriter.execute(() -> {
+            writeLog(s);
+            EventBus.post("edt.stall", s);
+        });
+    }
+
+    private static String mostSampled(Map<String, Integer> counts, String none) {
+        return counts.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(none);
+    }
+
+    private synchronized void writeLog(Stall s) {
+        Path file = Path.of(DBConfig.EDT_STALL_LOG);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (Files.exists(file) && Files.size(file) >= DBConfig.EDT_STALL_LOG_MAX_BYTES) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(s.toLine());
+                w.newLine();
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not write EDT stall log: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Most recent stalls first.
+     */
+    public synchronized List<Stall> recent() {
+        return new ArrayList<>(recent);
+    }
+
+    /**
+     * Stalls grouped by panel, DAO method and event, most total time first.
+     */
+    public synchronized List<Summary> summary() {
+        List<Summary> list = new ArrayList<>();
+        for (Summary s : summaries.values()) {
+            Summary copy = new Summary(s.panel, s.daoMethod, s.event);
+            copy.count = s.count;
+            copy.totalMillis = s.totalMillis;
+            copy.maxMillis = s.maxMillis;
+            copy.jdbcCount = s.jdbcCount;
+            list.add(copy);
+        }
+        list.sort(Comparator.comparingLong((Summary s) -> s.totalMillis).reversed());
+        return list;
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+        summaries.clear();
+    }
+}
@@ -1,18 +1,91 @@
 package Main;
 
+import java.awt.event.HierarchyEvent;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
 /**
  * Very small application EventBus for UI refresh events. Usage:
- * EventBus.addListener("test.saved", (type, payload) -> { ... });
- * EventBus.post("test.saved", testId);
+ * EventBus.addListener("activity.logged", (type, payload) -> { ... });
+ * EventBus.post("activity.logged", count);
+ *
+ * Each event type has a delivery mode (see configure):
+ * SYNC  - listeners run on the posting thread before post() returns (default)
+ * ASYNC - listeners run on the single "EventBus-Dispatcher" thread
+ * EDT   - listeners run on the Event Dispatch Thread
+ *
+ * An ASYNC or EDT type can also be coalesced: posts within the window after
+ * the first one are folded into a single delivery carrying the latest
+ * payload, so a batch of 50 saves causes one refresh. Deliveries of one event
+ * type always happen in posting order.
+ *
+ * The "*.changed" types carry a ChangeEvent with before/after snapshots of
+ * one row (see postChange / addChangeListener). They are never coalesced:
+ * every delta has to reach the listeners.
+ *
+ * UI components register with bind / bindChanges instead of addListener: the
+ * registration is dropped when the component stops being displayable
+ * (dialog disposed, panel removed from its frame) and restored if it is
+ * shown again, so discarded panels are neither kept alive nor refreshed.
+ * listenerCounts() reports what is registered.
  */
 public class EventBus {
 
+    public enum Delivery {
+        SYNC, ASYNC, EDT
+    }
+
+    private static class Config {
+
+        final Delivery delivery;
+        final long coalesceWindowMs;
+
+        Config(Delivery delivery, long coalesceWindowMs) {
+            this.delivery = delivery;
+            this.coalesceWindowMs = coalesceWindowMs;
+        }
+    }
+
+    private static final Config DEFAULT_CONFIG = new Config(Delivery.SYNC, 0);
+
     private static final Map<String, CopyOnWriteArrayList<BiConsumer<String, Object>>> listeners = new ConcurrentHashMap<>();
+    private static final Map<String, Config> configs = new ConcurrentHashMap<>();
+
+    // event type -> latest payload of a coalesced delivery that is scheduled but not yet run; guarded by "pending"
+    private static final Map<String, Object> pending = new HashMap<>();
+
+    private static final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EventBus-Dispatcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        configure("activity.logged", Delivery.EDT, 500);
+        configure("open.tests.status", Delivery.EDT, 0);
+        configure("test.changed", Delivery.EDT, 0);
+        configure("patient.changed", Delivery.EDT, 0);
+        configure("account.changed", Delivery.EDT, 0);
+        configure("edt.stall", Delivery.EDT, 1000);
+    }
+
+    /**
+     * Set how events of this type are delivered. coalesceWindowMs 0 delivers
+     * every post; it is ignored for SYNC.
+     */
+    public static void configure(String eventType, Delivery delivery, long coalesceWindowMs) {
+        configs.put(eventType, new Config(delivery, delivery == Delivery.SYNC ? 0 : Math.max(0, coalesceWindowMs)));
+    }
 
     public static void addListener(String eventType, BiConsumer<String, Object> listener) {
         listeners.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>()).add(listener);
@@ -25,7 +98,133 @@ public class EventBus {
         }
     }
 
+    /**
+     * Handle for one registered listener.
+     */
+    public static class Subscription {
+
+        private final String eventType;
+        private final BiConsumer<String, Object> listener;
+        private boolean active = true;
+
+        private Subscription(String eventType, BiConsumer<String, Object> listener) {
+            this.eventType = eventType;
+            this.listener = listener;
+        }
+
+        public synchronized void unsubscribe() {
+            if (active) {
+                active = false;
+                removeListener(eventType, listener);
+            }
+        }
+
+        private synchronized void resubscribe() {
+            if (!active) {
+                active = true;
+                addListener(eventType, listener);
+            }
+        }
+
+        public synchronized boolean isActive() {
+            return active;
+        }
+    }
+
+    public static Subscription subscribe(String eventType, BiConsumer<String, Object> listener) {
+        addListener(eventType, listener);
+        return new Subscription(eventType, listener);
+    }
+
+    /**
+     * Subscribe for as long as owner is displayable. The listener is
+     * registered right away (the owner is usually built before it is added to
+     * a window) and removed when the owner, or a window or panel it sits in,
+     * is disposed or removed.
+     */
+    public static Subscription bind(JComponent owner, String eventType, BiConsumer<String, Object> listener) {
+        Subscription sub = subscribe(eventType, listener);
+        owner.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0) {
+                if (owner.isDisplayable()) {
+                    sub.resubscribe();
+                } else {
+                    sub.unsubscribe();
+                }
+            }
+        });
+        return sub;
+    }
+
+    /**
+     * bind() for the ChangeEvents of one "*.changed" type.
+     */
+    public static <T> Subscription bindChanges(JComponent owner, String eventType, Consumer<ChangeEvent<T>> listener) {
+        return bind(owner, eventType, changes(listener));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> BiConsumer<String, Object> changes(Consumer<ChangeEvent<T>> listener) {
+        return (type, payload) -> {
+            if (payload instanceof ChangeEvent) {
+                listener.accept((ChangeEvent<T>) payload);
+            }
+        };
+    }
+
+    /**
+     * Diagnostic: number of registered listeners per event type.
+     */
+    public static Map<String, Integer> listenerCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, CopyOnWriteArrayList<BiConsumer<String, Object>>> e : listeners.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                counts.put(e.getKey(), e.getValue().size());
+            }
+        }
+        return counts;
+    }
+
+    public static void postChange(String eventType, ChangeEvent<?> change) {
+        post(eventType, change);
+    }
+
     public static void post(String eventType, Object payload) {
+        Config config = configs.getOrDefault(eventType, DEFAULT_CONFIG);
+        if (config.delivery == Delivery.SYNC) {
+            deliver(eventType, payload);
+            return;
+        }
+        if (config.coalesceWindowMs == 0) {
+            // through the dispatcher even for EDT, so order matches coalesced types
+            dispatcher.execute(() -> handOff(config, eventType, payload));
+            return;
+        }
+        synchronized (pending) {
+            boolean scheduled = pending.containsKey(eventType);
+            pending.put(eventType, payload);
+            if (scheduled) {
+                return; // folded into the delivery already scheduled
+            }
+        }
+        dispatcher.schedule(() -> {
+            Object latest;
+            synchronized (pending) {
+                latest = pending.remove(eventType);
+            }
+            handOff(config, eventType, latest);
+        }, config.coalesceWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void handOff(Config config, String eventType, Object payload) {
+        if (config.delivery == Delivery.EDT) {
+            SwingUtilities.invokeLater(() -> deliver(eventType, payload));
+        } else {
+            deliver(eventType, payload);
+        }
+    }
+
+    private static void deliver(String eventType, Object payload) {
         CopyOnWriteArrayList<BiConsumer<String, Object>> list = listeners.get(eventType);
         if (list == null) {
             return;
@@ -0,0 +1,338 @@
+package Main;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table model for the list panels that loads rows a page at a time
+ * from a keyset-paginated DAO method. Only the first page is fetched on
+ * reload; further pages are fetched as the table is scrolled towards the
+ * bottom (see attachTo). The total number of matching rows is fetched once
+ * per reload so the panel can show "Showing x of y".
+ *
+ * All queries run through the panel's BackgroundLoader; the model only
+ * changes (and fires events) on the EDT once a page has arrived. A reload
+ * supersedes any page fetch still in flight. A failed reload or page fetch
+ * ends that load (so scrolling or a new reload can try again) and is shown
+ * in getStatusText.
+ *
+ * Rows are ordered by a descending integer key (test_id, patient_id, ...);
+ * the key of the last loaded row is the seek position for the next page.
+ * putRow / removeRow apply a single ChangeEvent without a reload.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Supplies pages for the current filter.
+     */
+    public interface PageSource<T> {
+
+        /**
+         * Rows with key below beforeKey (0 = from the top), at most pageSize.
+         * A failure is thrown, not returned as an empty page, so it is not
+         * taken for the end of the rows.
+         */
+        List<T> fetchPage(int beforeKey, int pageSize) throws SQLException;
+
+        /**
+         * Total number of rows matching the filter.
+         */
+        int count() throws SQLException;
+    }
+
+    /**
+     * The DAO page method, as a lambda for source().
+     */
+    public interface Pages<T> {
+
+        List<T> fetch(int beforeKey, int pageSize) throws SQLException;
+    }
+
+    /**
+     * The DAO count method, as a lambda for source().
+     */
+    public interface Count {
+
+        int count() throws SQLException;
+    }
+
+    /**
+     * PageSource from two lambdas, e.g.
+     * source((before, size) -> PatientDAO.listPage(sex, q, before, size), () -> PatientDAO.count(sex, q)).
+     */
+    public static <T> PageSource<T> source(Pages<T> pages, Count count) {
+        return new PageSource<T>() {
+            @Override
+            public List<T> fetchPage(int beforeKey, int pageSize) throws SQLException {
+                return pages.fetch(beforeKey, pageSize);
+            }
+
+            @Override
+            public int count() throws SQLException {
+                return count.count();
+            }
+        };
+    }
+
+    private final String[] columns;
+    private final ToIntFunction<T> keyOf;
+    private final Function<T, Object[]> toCells;
+    private final int pageSize;
+    private final BackgroundLoader loader;
+
+    private PageSource<T> source;
+    private final List<T> rows = new ArrayList<>();
+    private final List<Object[]> cells = new ArrayList<>();
+    private boolean exhausted = true;
+    private boolean reloading = false;
+    private boolean fetchingPage = false;
+    private int totalCount = 0;
+    private String loadError = null; // message of the last failed load, until one succeeds
+
+    public PagedTableModel(String[] columns, ToIntFunction<T> keyOf, Function<T, Object[]> toCells, BackgroundLoader loader) {
+        this(columns, keyOf, toCells, loader, DEFAULT_PAGE_SIZE);
+    }
+
+    public PagedTableModel(String[] columns, ToIntFunction<T> keyOf, Function<T, Object[]> toCells, BackgroundLoader loader, int pageSize) {
+        this.columns = columns;
+        this.keyOf = keyOf;
+        this.toCells = toCells;
+        this.loader = loader;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Start over with a new filter: fetch the total count and the first page
+     * in the background, then replace the loaded rows.
+     */
+    public void reload(PageSource<T> newSource) {
+        source = newSource;
+        reloading = true;
+        fetchingPage = false;
+        loader.load(() -> {
+            int total = newSource.count();
+            return new FirstPage<>(total, newSource.fetchPage(0, pageSize));
+        }, first -> {
+            reloading = false;
+            loadError = null;
+            rows.clear();
+            cells.clear();
+            exhausted = false;
+            totalCount = first.total;
+            appendPage(first.rows);
+            fireTableDataChanged();
+        }, e -> {
+            reloading = false;
+            loadError = message(e);
+            fireTableDataChanged();
+        });
+    }
+
+    /**
+     * Fetch the page after the last loaded row in the background.
+     *
+     * @return false if there is nothing more to load or a fetch is already
+     * running
+     */
+    public boolean loadNextPage() {
+        if (exhausted || reloading || fetchingPage || source == null) {
+            return false;
+        }
+        fetchingPage = true;
+        PageSource<T> src = source;
+        int before = rows.isEmpty() ? 0 : keyOf.applyAsInt(rows.get(rows.size() - 1));
+        loader.append(() -> src.fetchPage(before, pageSize), page -> {
+            fetchingPage = false;
+            loadError = null;
+            int first = rows.size();
+            appendPage(page);
+            if (rows.size() > first) {
+                fireTableRowsInserted(first, rows.size() - 1);
+            } else {
+                fireCountChanged();
+            }
+        }, e -> {
+            fetchingPage = false;
+            loadError = message(e);
+            fireCountChanged();
+        });
+        return true;
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private void appendPage(List<T> page) {
+        for (T row : page) {
+            rows.add(row);
+            cells.add(toCells.apply(row));
+        }
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * Load the next page whenever the scroll pane's vertical bar gets close to
+     * the bottom of what is loaded.
+     */
+    public void attachTo(JScrollPane scrollPane) {
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        bar.addAdjustmentListener(e -> {
+            int prefetch = bar.getVisibleAmount() / 2;
+            if (!exhausted && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - prefetch) {
+                loadNextPage();
+            }
+        });
+    }
+
+    /**
+     * Apply a created or updated row in place: replace the loaded row with
+     * the same key, or insert it at its position in the key order. A new row
+     * below the last loaded one is only counted; it arrives with its page.
+     * Must be called on the EDT.
+     */
+    public void putRow(T row) {
+        if (reloading) {
+            reload(source); // the page in flight may predate this change
+            return;
+        }
+        int key = keyOf.applyAsInt(row);
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            rows.set(i, row);
+            cells.set(i, toCells.apply(row));
+            fireTableRowsUpdated(i, i);
+            return;
+        }
+        totalCount++;
+        int at = -i - 1;
+        if (at < rows.size() || exhausted) {
+            rows.add(at, row);
+            cells.add(at, toCells.apply(row));
+            fireTableRowsInserted(at, at);
+        } else {
+            fireCountChanged();
+        }
+    }
+
+    /**
+     * Remove the row with this key (deleted, or no longer matching the
+     * filter). The caller only calls this for rows that matched the filter,
+     * so a row not loaded yet is still taken off the total. Must be called on
+     * the EDT.
+     */
+    public void removeRow(int key) {
+        if (reloading) {
+            reload(source);
+            return;
+        }
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            rows.remove(i);
+            cells.remove(i);
+            totalCount = Math.max(0, totalCount - 1);
+            fireTableRowsDeleted(i, i);
+        } else if (!exhausted && -i - 1 >= rows.size()) {
+            totalCount = Math.max(0, totalCount - 1);
+            fireCountChanged();
+        }
+    }
+
+    /**
+     * Only the total changed: notify listeners (status line) without
+     * fireTableDataChanged, which would clear the table selection.
+     */
+    private void fireCountChanged() {
+        if (!rows.isEmpty()) {
+            fireTableRowsUpdated(rows.size() - 1, rows.size() - 1);
+        }
+    }
+
+    /**
+     * Binary search over the descending keys: the index of key, or
+     * (-(insertion point) - 1) if it is not loaded.
+     */
+    private int indexOfKey(int key) {
+        int lo = 0;
+        int hi = rows.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = keyOf.applyAsInt(rows.get(mid));
+            if (k == key) {
+                return mid;
+            } else if (k > key) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -lo - 1;
+    }
+
+    public T getRow(int rowIndex) {
+        return rows.get(rowIndex);
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public boolean isFullyLoaded() {
+        return exhausted;
+    }
+
+    /**
+     * Status line text for the list panels, e.g. "Showing 100 of 2,345".
+     */
+    public String getStatusText() {
+        String text = String.format("Showing %,d of %,d", rows.size(), Math.max(totalCount, rows.size()));
+        return loadError != null ? text + " - could not load rows: " + loadError : text;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Object[] r = cells.get(rowIndex);
+        return columnIndex < r.length ? r[columnIndex] : null;
+    }
+
+    @Override
+    public boolean isCellEditable(int r, int c) {
+        return false;
+    }
+
+    private static class FirstPage<T> {
+
+        final int total;
+        final List<T> rows;
+
+        FirstPage(int total, List<T> rows) {
+            this.total = total;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+// ParameterRepository.java
+// Saves the parameter rows of a test or template as a diff against what is stored.
+package Main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Parameter rows of one owner (a test in parameters, a template in
+ * template_parameters). sync() compares the edited rows with the stored ones
+ * and only writes the difference, as batches on the caller's connection (and
+ * so inside the caller's transaction):
+ *
+ * - an edited row is matched to a stored row with the same parameter name
+ *   (case-insensitive; repeated names pair up in stored order)
+ * - matched rows are UPDATEd only if a value column or the name as written
+ *   changed (so a rename from "hb" to "Hb" or " Hb" to "Hb" is saved)
+ * - unmatched edited rows are INSERTed, unmatched stored rows DELETEd
+ *
+ * Unchanged rows cost nothing, and columns the editor does not show (e.g.
+ * parameters.remarks) survive a save.
+ */
+public class ParameterRepository {
+
+    public static final ParameterRepository TEST_PARAMETERS = new ParameterRepository(
+            "parameters", "parameter_id", "test_id", "parameter_name",
+            new String[]{"result_value", "normal_range", "units", "interpretation"},
+            p -> new String[]{p.resultValue, p.normalRange, p.units, p.interpretation});
+
+    public static final ParameterRepository TEMPLATE_PARAMETERS = new ParameterRepository(
+            "template_parameters", "id", "template_id", "param_name",
+            new String[]{"units", "reference_range", "critical_values"},
+            p -> new String[]{p.getUnits(), p.getReferenceRange(), p.getCriticalValues()});
+
+    /**
+     * Rows written by one sync().
+     */
+    public static class Result {
+
+        public int inserted;
+        public int updated;
+        public int deleted;
+        public int unchanged;
+
+        @Override
+        public String toString() {
+            return inserted + " inserted, " + updated + " updated, " + deleted + " deleted, " + unchanged + " unchanged";
+        }
+    }
+
+    private final String table;
+    private final String idColumn;
+    private final String ownerColumn;
+    private final String nameColumn;
+    private final String[] valueColumns;
+    private final Function<TestParameter, String[]> values;
+
+    private ParameterRepository(String table, String idColumn, String ownerColumn, String nameColumn,
+            String[] valueColumns, Function<TestParameter, String[]> values) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.ownerColumn = ownerColumn;
+        this.nameColumn = nameColumn;
+        this.valueColumns = valueColumns;
+        this.values = values;
+    }
+
+    private static class Stored {
+
+        final int id;
+        final String name; // as stored, not the match key
+        final String[] values;
+
+        Stored(int id, String name, String[] values) {
+            this.id = id;
+            this.name = name;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Make the stored rows of ownerId equal to edited. Does not commit.
+     */
+    public Result sync(Connection c, int ownerId, List<TestParameter> edited) throws SQLException {
+        Map<String, Deque<Stored>> stored = load(c, ownerId);
+        List<TestParameter> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>(); // {id, TestParameter}
+        Result result = new Result();
+        for (TestParameter p : edited) {
+            Deque<Stored> sameName = stored.get(key(p.parameterName));
+            Stored match = sameName != null ? sameName.pollFirst() : null;
+            if (match == null) {
+                inserts.add(p);
+            } else if (!Objects.equals(match.name, p.parameterName) || !Arrays.equals(match.values, values.apply(p))) {
+                updates.add(new Object[]{match.id, p});
+            } else {
+                result.unchanged++;
+            }
+        }
+        List<Integer> deletes = new ArrayList<>();
+        for (Deque<Stored> left : stored.values()) {
+            for (Stored s : left) {
+                deletes.add(s.id);
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + table + " WHERE " + idColumn + " = ?")) {
+                for (int id : deletes) {
+                    ps.setInt(1, id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            result.deleted = deletes.size();
+        }
+        if (!updates.isEmpty()) {
+            StringBuilder sql = new StringBuilder("UPDATE " + table + " SET " + nameColumn + " = ?");
+            for (String col : valueColumns) {
+                sql.append(", ").append(col).append(" = ?");
+            }
+            sql.append(" WHERE ").append(idColumn).append(" = ?");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                for (Object[] u : updates) {
+                    int i = bindRow(ps, 1, (TestParameter) u[1]);
+                    ps.setInt(i, (Integer) u[0]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            result.updated = updates.size();
+        }
+        if (!inserts.isEmpty()) {
+            StringBuilder sql = new StringBuilder("INSERT INTO " + table + " (" + ownerColumn + ", " + nameColumn);
+            for (String col : valueColumns) {
+                sql.append(", ").append(col);
+            }
+            sql.append(") VALUES (?, ?");
+            for (int i = 0; i < valueColumns.length; i++) {
+                sql.append(", ?");
+            }
+            sql.append(")");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                for (TestParameter p : inserts) {
+                    ps.setInt(1, ownerId);
+                    bindRow(ps, 2, p);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            result.inserted = inserts.size();
+        }
+        return result;
+    }
+
+    /**
+     * Bind name and value columns from index i; returns the next index.
+     */
+    private int bindRow(PreparedStatement ps, int i, TestParameter p) throws SQLException {
+        ps.setString(i++, p.parameterName);
+        for (String v : values.apply(p)) {
+            ps.setString(i++, v);
+        }
+        return i;
+    }
+
+    /**
+     * Stored rows of the owner by lower-case name, in id order. Uses the
+     * owner column index (see SchemaIndexes).
+     */
+    private Map<String, Deque<Stored>> load(Connection c, int ownerId) throws SQLException {
+        Map<String, Deque<Stored>> stored = new HashMap<>();
+        String sql = "SELECT " + idColumn + ", " + nameColumn + ", " + String.join(", ", valueColumns)
+                + " FROM " + table + " WHERE " + ownerColumn + " = ? ORDER BY " + idColumn + " FOR UPDATE";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, ownerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String[] vals = new String[valueColumns.length];
+                    for (int i = 0; i < vals.length; i++) {
+                        vals[i] = rs.getString(3 + i);
+                    }
+                    String name = rs.getString(2);
+                    stored.computeIfAbsent(key(name), k -> new ArrayDeque<>()).add(new Stored(rs.getInt(1), name, vals));
+                }
+            }
+        }
+        return stored;
+    }
+
+    private static String key(String name) {
+        return Objects.toString(name, "").trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,193 @@
+// PatientCache.java
+// Read-through LRU cache of patients by patient_id.
+package Main;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded (DBConfig.PATIENT_CACHE_SIZE) least-recently-used cache in front of
+ * PatientDAO.findById, for the lookups done per row or per paint: the test
+ * form's patient picker, the test report header, the patient list's view
+ * action. Ids that do not exist are cached too, so a deleted patient's id
+ * is not looked up again and again. Editing reads the row fresh with
+ * PatientDAO.findById, so a stale copy is never saved back.
+ *
+ * PatientDAO keeps the cache exact for writes made through it: after a save
+ * or delete commits it stores the new row or drops the id, in the same
+ * after-commit hook that posts "patient.changed", so listeners never read a
+ * stale entry. PatientDAO.listPage primes the cache with the rows it reads.
+ * Inside a UnitOfWork the cache is bypassed, so rows that may still be
+ * rolled back are never cached. Changes made by other clients are only seen
+ * after the entry is evicted or clear() is called.
+ *
+ * get() returns a copy, so callers can edit it (e.g. in Patient_Form_Panel)
+ * without changing the cached row.
+ */
+public class PatientCache {
+
+    private static final Patient MISSING = new Patient();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    // bumped by every committed write; a read older than the last write is not cached
+    private static final AtomicLong writes = new AtomicLong();
+
+    // access-ordered: iteration starts at the least recently used entry; guarded by "entries"
+    private static final LinkedHashMap<Integer, Patient> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * The patient (a copy), or null if there is none. Reads through to
+     * PatientDAO.findById on a miss.
+     */
+    public static Patient get(int patientId) {
+        Patient p = lookup(patientId);
+        return p != null ? copy(p) : null;
+    }
+
+    /**
+     * The patient's name, or null if there is none.
+     */
+    public static String name(int patientId) {
+        Patient p = lookup(patientId);
+        return p != null ? p.name : null;
+    }
+
+    private static Patient lookup(int patientId) {
+        if (UnitOfWork.current() != null) {
+            return PatientDAO.findById(patientId); // may see rows of the open transaction
+        }
+        synchronized (entries) {
+            Patient p = entries.get(patientId);
+            if (p != null) {
+                hits.incrementAndGet();
+                return p == MISSING ? null : p;
+            }
+        }
+        misses.incrementAndGet();
+        long generation = writes.get();
+        Patient p;
+        try {
+            p = PatientDAO.load(patientId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null; // not cached, the next lookup tries again
+        }
+        storeIfCurrent(patientId, p != null ? copy(p) : MISSING, generation);
+        return p;
+    }
+
+    /**
+     * Take before reading rows that will be passed to prime().
+     */
+    static long generation() {
+        return writes.get();
+    }
+
+    /**
+     * Cache rows read from the database after generation() returned
+     * generation; skipped if a write has committed since.
+     */
+    static void prime(Collection<Patient> patients, long generation) {
+        if (UnitOfWork.current() != null) {
+            return;
+        }
+        for (Patient p : patients) {
+            storeIfCurrent(p.patientId, copy(p), generation);
+        }
+    }
+
+    /**
+     * A committed save: cache the row as written (null drops the id).
+     */
+    static void put(int patientId, Patient p) {
+        if (p != null) {
+            synchronized (entries) {
+                writes.incrementAndGet();
+                store(patientId, copy(p));
+            }
+        } else {
+            invalidate(patientId);
+        }
+    }
+
+    static void invalidate(int patientId) {
+        synchronized (entries) {
+            writes.incrementAndGet();
+            entries.remove(patientId);
+        }
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            writes.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private static void storeIfCurrent(int patientId, Patient p, long generation) {
+        synchronized (entries) {
+            if (writes.get() == generation) {
+                store(patientId, p);
+            }
+        }
+    }
+
+    private static void store(int patientId, Patient p) {
+        synchronized (entries) {
+            entries.put(patientId, p);
+            Iterator<Patient> it = entries.values().iterator();
+            while (entries.size() > DBConfig.PATIENT_CACHE_SIZE && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static Patient copy(Patient p) {
+        Patient c = new Patient(p.patientId, p.name, p.dateOfBirth, p.sex);
+        c.contactNumber = p.contactNumber;
+        c.email = p.email;
+        c.address = p.address;
+        c.bloodType = p.bloodType;
+        c.allergies = p.allergies;
+        c.existingConditions = p.existingConditions;
+        c.emergencyContact = p.emergencyContact;
+        c.dateRegistered = p.dateRegistered;
+        c.registeredById = p.registeredById;
+        c.registeredBy = p.registeredBy;
+        c.profilePicture = p.profilePicture;
+        return c;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static String summary() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        return "patient cache: " + size() + " entries, " + h + " hits, " + m + " misses, " + evictions.get() + " evictions"
+                + (total > 0 ? String.format(" (%.1f%% hit rate)", 100.0 * h / total) : "");
+    }
+}
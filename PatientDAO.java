@@ -14,30 +14,29 @@ import java.util.List;
  * id or legacy string) into the Patient object. The UI or callers should
  * resolve the account display name later (after the ResultSet has been closed)
  * if they want the full name.
+ *
+ * Lookups by id from the UI go through PatientCache; save and delete keep it
+ * up to date.
  */
 public class PatientDAO {
 
-    public static List<Patient> listAll(String filterSex, String search) {
+    // must list exactly the columns of the FULLTEXT index (see SchemaIndexes)
+    private static final String MATCH = "MATCH(name, contact_number, email)";
+
+    public static List<Patient> listAll(String filterSex, String search) throws SQLException {
+        return listPage(filterSex, search, 0, 0);
+    }
+
+    /**
+     * Keyset-paginated listAll: up to pageSize patients with patient_id below
+     * beforePatientId, newest first. beforePatientId = 0 starts at the top;
+     * pageSize 0 means no limit.
+     */
+    public static List<Patient> listPage(String filterSex, String search, int beforePatientId, int pageSize) throws SQLException {
         List<Patient> list = new ArrayList<>();
-        String sql = "SELECT * FROM patients WHERE 1=1";
-        if (filterSex != null && !filterSex.isEmpty()) {
-            sql += " AND sex = ?";
-        }
-        if (search != null && !search.isEmpty()) {
-            sql += " AND (name LIKE ? OR contact_number LIKE ? OR email LIKE ?)";
-        }
-        sql += " ORDER BY patient_id DESC";
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            int idx = 1;
-            if (filterSex != null && !filterSex.isEmpty()) {
-                ps.setString(idx++, filterSex);
-            }
-            if (search != null && !search.isEmpty()) {
-                String q = "%" + search + "%";
-                ps.setString(idx++, q);
-                ps.setString(idx++, q);
-                ps.setString(idx++, q);
-            }
+        long cacheGeneration = PatientCache.generation();
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(pageSql(filterSex, search, beforePatientId, pageSize))) {
+            bindPage(ps, filterSex, search, beforePatientId, pageSize);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     // mapRow reads values from the current ResultSet row but DOES NOT execute
@@ -45,28 +44,190 @@ public class PatientDAO {
                     list.add(mapRow(rs));
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            PatientCache.prime(list, cacheGeneration);
         }
         return list;
     }
 
-    public static Patient findById(int id) {
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT * FROM patients WHERE patient_id = ?")) {
-            ps.setInt(1, id);
+    public static int count(String filterSex, String search) throws SQLException {
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(countSql(filterSex, search))) {
+            bindFilters(ps, 1, filterSex, search);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapRow(rs);
+                    return rs.getInt("c");
                 }
             }
+        }
+        return 0;
+    }
+
+    /**
+     * The listPage query; bindPage binds its parameters. Package-private so
+     * QueryPlanVerifier explains exactly what the list runs.
+     */
+    static String pageSql(String filterSex, String search, int beforePatientId, int pageSize) {
+        return "SELECT * FROM patients WHERE 1=1" + filterClause(filterSex, search)
+                + (beforePatientId > 0 ? " AND patient_id < ?" : "")
+                + " ORDER BY patient_id DESC"
+                + (pageSize > 0 ? " LIMIT ?" : "");
+    }
+
+    static void bindPage(PreparedStatement ps, String filterSex, String search, int beforePatientId, int pageSize) throws SQLException {
+        int idx = bindFilters(ps, 1, filterSex, search);
+        if (beforePatientId > 0) {
+            ps.setInt(idx++, beforePatientId);
+        }
+        if (pageSize > 0) {
+            ps.setInt(idx++, pageSize);
+        }
+    }
+
+    /**
+     * The count query; bindFilters(ps, 1, ...) binds its parameters.
+     */
+    static String countSql(String filterSex, String search) {
+        return "SELECT COUNT(*) AS c FROM patients WHERE 1=1" + filterClause(filterSex, search);
+    }
+
+    private static String filterClause(String filterSex, String search) {
+        String sql = "";
+        if (filterSex != null && !filterSex.isEmpty()) {
+            sql += " AND sex = ?";
+        }
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms != null) {
+            if (terms.isId()) {
+                sql += " AND patient_id = ?";
+            } else if (terms.isFullText()) {
+                sql += " AND " + MATCH + " AGAINST (? IN BOOLEAN MODE)";
+            } else {
+                sql += " AND name LIKE ?";
+            }
+        }
+        return sql;
+    }
+
+    static int bindFilters(PreparedStatement ps, int idx, String filterSex, String search) throws SQLException {
+        if (filterSex != null && !filterSex.isEmpty()) {
+            ps.setString(idx++, filterSex);
+        }
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms != null) {
+            if (terms.isId()) {
+                ps.setInt(idx++, terms.getId());
+            } else if (terms.isFullText()) {
+                ps.setString(idx++, terms.getBooleanQuery());
+            } else {
+                ps.setString(idx++, terms.getPrefixPattern());
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Ranked search for pickers: the best FULLTEXT matches first (or
+     * name-prefix matches, by name, for very short input). Digits return the
+     * patient with that id first, then patients whose contact number (or
+     * other text) starts with them. At most limit results.
+     */
+    public static List<Patient> search(String term, int limit) {
+        List<Patient> list = new ArrayList<>();
+        SearchTerms terms = SearchTerms.parse(term);
+        if (terms == null) {
+            return list;
+        }
+        // digits are an id, but may also be the start of a contact number: the id hit
+        // comes first, followed by FULLTEXT matches of the digits (3 or more)
+        String fullText = terms.isId() ? terms.getDigitsQuery() : terms.getBooleanQuery();
+        try (Connection c = DBConnection.getConnection()) {
+            if (terms.isId()) {
+                Patient p = find(c, terms.getId());
+                if (p != null) {
+                    list.add(p);
+                }
+                if (fullText == null) {
+                    return list;
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(searchSql(terms))) {
+                bindSearch(ps, terms, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next() && list.size() < limit) {
+                        Patient p = mapRow(rs);
+                        if (!terms.isId() || p.patientId != terms.getId()) {
+                            list.add(p);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * The ranked search query after the id lookup (FULLTEXT, or name prefix
+     * for short input); bindSearch binds its parameters. Package-private for
+     * QueryPlanVerifier.
+     */
+    static String searchSql(SearchTerms terms) {
+        String fullText = terms.isId() ? terms.getDigitsQuery() : terms.getBooleanQuery();
+        return fullText != null
+                ? "SELECT *, " + MATCH + " AGAINST (? IN BOOLEAN MODE) AS score FROM patients"
+                + " WHERE " + MATCH + " AGAINST (? IN BOOLEAN MODE) ORDER BY score DESC, name LIMIT ?"
+                : "SELECT * FROM patients WHERE name LIKE ? ORDER BY name LIMIT ?";
+    }
+
+    static void bindSearch(PreparedStatement ps, SearchTerms terms, int limit) throws SQLException {
+        String fullText = terms.isId() ? terms.getDigitsQuery() : terms.getBooleanQuery();
+        int idx = 1;
+        if (fullText != null) {
+            ps.setString(idx++, fullText);
+            ps.setString(idx++, fullText);
+        } else {
+            ps.setString(idx++, terms.getPrefixPattern());
+        }
+        ps.setInt(idx++, limit);
+    }
+
+    public static Patient findById(int id) {
+        try (Connection c = DBConnection.getConnection()) {
+            return find(c, id);
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * findById that reports errors instead of returning null (for
+     * PatientCache, which caches "no such patient").
+     */
+    static Patient load(int id) throws SQLException {
+        try (Connection c = DBConnection.getConnection()) {
+            return find(c, id);
+        }
+    }
+
+    private static Patient find(Connection c, int id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT * FROM patients WHERE patient_id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Insert or update a patient and post a "patient.changed" ChangeEvent with
+     * the rows before and after the write. An insert also counts the patient
+     * in test_stats, in the same transaction.
+     */
     public static boolean save(Patient p) {
         try (Connection c = DBConnection.getConnection()) {
+            boolean isNew = p.patientId <= 0;
+            Patient before = isNew ? null : find(c, p.patientId);
             if (p.patientId > 0) {
                 String sql = "UPDATE patients SET name=?, sex=?, date_of_birth=?, contact_number=?, email=?, address=?, blood_type=?, allergies=?, existing_conditions=?, emergency_contact=?, date_registered=?, registered_by=?, profile_picture=? WHERE patient_id=?";
                 try (PreparedStatement ps = c.prepareStatement(sql)) {
@@ -90,6 +251,7 @@ public class PatientDAO {
                 }
             } else {
                 String sql = "INSERT INTO patients (name, sex, date_of_birth, contact_number, email, address, blood_type, allergies, existing_conditions, emergency_contact, date_registered, registered_by, profile_picture) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+                c.setAutoCommit(false);
                 try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                     int i = 1;
                     ps.setString(i++, p.name);
@@ -111,8 +273,19 @@ public class PatientDAO {
                             p.patientId = rs.getInt(1);
                         }
                     }
+                    TestStats.adjustPatients(c, 1);
+                    c.commit();
+                } catch (SQLException ex) {
+                    c.rollback();
+                    p.patientId = 0;
+                    throw ex;
                 }
             }
+            Patient after = find(c, p.patientId);
+            UnitOfWork.afterCommit(() -> {
+                PatientCache.put(p.patientId, after);
+                EventBus.postChange("patient.changed", isNew ? ChangeEvent.created(p.patientId, after) : ChangeEvent.updated(p.patientId, before, after));
+            });
             ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", p.patientId > 0 ? "UpdatedPatient" : "AddedPatient", "patients", p.patientId, "Patient saved/updated.");
             return true;
         } catch (SQLException e) {
@@ -123,8 +296,37 @@ public class PatientDAO {
 
     public static boolean delete(int id) {
         try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("DELETE FROM patients WHERE patient_id = ?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+            c.setAutoCommit(false);
+            Patient before;
+            List<TestRecordRow> tests;
+            int deleted;
+            try {
+                before = find(c, id);
+                // the patient's tests go with it (ON DELETE CASCADE); take them off the counts first
+                tests = TestRecordDAO.patientRows(c, id);
+                TestStats.removeTests(c, tests);
+                TestRollupEngine.journalPatientTests(c, id);
+                ps.setInt(1, id);
+                deleted = ps.executeUpdate();
+                if (deleted > 0) {
+                    TestStats.adjustPatients(c, -1);
+                    c.commit();
+                } else {
+                    c.rollback();
+                }
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+            if (deleted > 0) {
+                UnitOfWork.afterCommit(() -> {
+                    PatientCache.invalidate(id);
+                    for (TestRecordRow t : tests) { // the cascaded deletes, for counts and open lists
+                        EventBus.postChange("test.changed", ChangeEvent.deleted(t.testId, t));
+                    }
+                    EventBus.postChange("patient.changed", ChangeEvent.deleted(id, before));
+                });
+            }
             ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", "DeletedPatient", "patients", id, "Patient deleted.");
             return true;
         } catch (SQLException e) {
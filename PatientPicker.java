@@ -0,0 +1,217 @@
+// PatientPicker.java
+// Type-ahead patient selector backed by PatientDAO.search.
+package Main;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Text field with a drop-down of matching patients. Typing restarts a
+ * DEBOUNCE_MS timer; when it fires, PatientDAO.search (id, FULLTEXT prefix
+ * or indexed name prefix, see SearchTerms; digits match both the id and the
+ * start of a contact number) runs on a BackgroundLoader for
+ * the top LIMIT matches. A newer search supersedes an older one, so stale
+ * results never replace newer ones. The list renders the returned rows
+ * directly; nothing is looked up per row or per paint.
+ *
+ * Up/Down move through the matches, Enter or a click selects, Escape closes
+ * the list. Editing the text clears the selection until a match is picked.
+ */
+public class PatientPicker extends JPanel {
+
+    private static final int LIMIT = 20;
+    private static final int DEBOUNCE_MS = 250;
+
+    private final JTextField field = new JTextField(20);
+    private final DefaultListModel<Patient> matches = new DefaultListModel<>();
+    private final JList<Patient> list = new JList<>(matches);
+    private final JPopupMenu popup = new JPopupMenu();
+    private final Timer debounce;
+    private final BackgroundLoader loader;
+    private Patient selected;
+    private boolean updating = false; // text set by select(), not typed
+
+    public PatientPicker() {
+        setLayout(new BorderLayout(4, 0));
+        setOpaque(false);
+        field.setToolTipText("Type a name, contact, e-mail or patient ID");
+        add(field, BorderLayout.CENTER);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        busy.setPreferredSize(new Dimension(40, 8));
+        add(busy, BorderLayout.EAST);
+        loader = new BackgroundLoader(busy);
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(l, value, index, isSelected, cellHasFocus);
+                if (value instanceof Patient) {
+                    Patient p = (Patient) value;
+                    setText(label(p) + (p.dateOfBirth != null ? "  -  born " + p.dateOfBirth : ""));
+                }
+                return this;
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int i = list.locationToIndex(e.getPoint());
+                if (i >= 0) {
+                    select(matches.get(i));
+                }
+            }
+        });
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(null);
+        popup.setFocusable(false);
+        popup.add(scroll);
+
+        debounce = new Timer(DEBOUNCE_MS, e -> search());
+        debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        move(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        move(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (popup.isVisible() && list.getSelectedValue() != null) {
+                            select(list.getSelectedValue());
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
+    private static String label(Patient p) {
+        return (p.name != null ? p.name + " " : "") + "(ID:" + p.patientId + ")";
+    }
+
+    private void typed() {
+        if (updating) {
+            return;
+        }
+        selected = null;
+        debounce.restart();
+    }
+
+    private void search() {
+        String term = field.getText().trim();
+        if (term.isEmpty()) {
+            loader.cancel();
+            popup.setVisible(false);
+            return;
+        }
+        loader.load(() -> PatientDAO.search(term, LIMIT), this::showMatches);
+    }
+
+    private void showMatches(List<Patient> rows) {
+        matches.clear();
+        for (Patient p : rows) {
+            matches.addElement(p);
+        }
+        if (rows.isEmpty() || !field.isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(Math.min(rows.size(), 10));
+        popup.setPopupSize(Math.max(field.getWidth(), 260), list.getPreferredScrollableViewportSize().height + 4);
+        popup.show(field, 0, field.getHeight());
+        field.requestFocusInWindow();
+    }
+
+    private void move(int delta) {
+        if (!popup.isVisible() || matches.isEmpty()) {
+            return;
+        }
+        int i = Math.max(0, Math.min(matches.size() - 1, list.getSelectedIndex() + delta));
+        list.setSelectedIndex(i);
+        list.ensureIndexIsVisible(i);
+    }
+
+    private void select(Patient p) {
+        debounce.stop();
+        loader.cancel();
+        popup.setVisible(false);
+        selected = p;
+        updating = true;
+        try {
+            field.setText(p != null ? label(p) : "");
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Preselect a patient (e.g. when editing a test). The id is selected at
+     * once; the name is loaded in the background and shown only if nothing
+     * was typed or picked in the meantime.
+     */
+    public void setSelectedPatientId(int patientId) {
+        if (patientId <= 0) {
+            select(null);
+            return;
+        }
+        Patient known = new Patient();
+        known.patientId = patientId;
+        select(known);
+        loader.load(() -> PatientCache.get(patientId), p -> {
+            if (p != null && selected == known) {
+                select(p);
+            }
+        });
+    }
+
+    /**
+     * The picked patient's id, or 0 if none is picked.
+     */
+    public int getSelectedPatientId() {
+        return selected != null ? selected.patientId : 0;
+    }
+
+    @Override
+    public void removeNotify() {
+        debounce.stop();
+        loader.cancel();
+        popup.setVisible(false);
+        super.removeNotify();
+    }
+}
@@ -6,6 +6,7 @@ package Main;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.sql.SQLException;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import com.toedter.calendar.JDateChooser;
 
@@ -198,6 +199,22 @@ public class Patient_Form_Panel extends JPanel {
         // Save registrant as account_id so DB FK remains valid
         Account cur = Session.getCurrentUser();
         patient.registeredById = (cur != null) ? cur.accountId : 0;
-        return PatientDAO.save(patient);
+        // the patient row and its activity log entry commit together
+        boolean isNew = patient.patientId <= 0;
+        try {
+            return UnitOfWork.call(uow -> {
+                if (!PatientDAO.save(patient)) {
+                    uow.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            if (isNew) {
+                patient.patientId = 0;
+            }
+            return false;
+        }
     }
 }
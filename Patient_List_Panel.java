@@ -1,15 +1,17 @@
 package Main;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
-public class Patient_List_Panel extends JPanel {
+public class Patient_List_Panel extends JPanel implements Refreshable {
 
-    private DefaultTableModel model;
+    private PagedTableModel<Patient> model;
     private JTable table;
+    private JLabel lblCount;
     private JTextField txtSearch;
     private JComboBox<String> cmbSex;
+    // filter of the rows currently shown (the search box may have been edited since)
+    private String loadedSex = "";
+    private String loadedSearch = "";
 
     public Patient_List_Panel() {
         setLayout(new BorderLayout());
@@ -28,15 +30,18 @@ public class Patient_List_Panel extends JPanel {
         top.add(cmbSex);
         top.add(btnSearch);
         top.add(btnAdd);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        top.add(busy);
         add(top, BorderLayout.NORTH);
 
-        model = new DefaultTableModel(new Object[]{"ID", "Name", "Sex", "DOB", "Contact", "Registered"}, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel<>(new String[]{"ID", "Name", "Sex", "DOB", "Contact", "Registered"},
+                p -> p.patientId,
+                p -> new Object[]{p.patientId, p.name, p.sex, p.dateOfBirth, p.contactNumber, p.dateRegistered},
+                new BackgroundLoader(busy));
         table = new JTable(model);
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        JScrollPane scroll = new JScrollPane(table);
+        model.attachTo(scroll);
+        add(scroll, BorderLayout.CENTER);
 
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnEdit = new JButton("Edit");
@@ -48,21 +53,59 @@ public class Patient_List_Panel extends JPanel {
         bottom.add(btnEdit);
         bottom.add(btnDelete);
         bottom.add(btnView);
+        lblCount = new JLabel();
+        bottom.add(lblCount);
+        model.addTableModelListener(e -> lblCount.setText(model.getStatusText()));
         add(bottom, BorderLayout.SOUTH);
 
+        // Apply patients changed elsewhere (delivered on the EDT, one event per row)
+        EventBus.bindChanges(this, "patient.changed", this::applyChange);
+
         load();
     }
 
     public void load() {
-        model.setRowCount(0);
-        List<Patient> list = PatientDAO.listAll((String) cmbSex.getSelectedItem(), txtSearch.getText().trim());
-        for (Patient p : list) {
-            model.addRow(new Object[]{p.patientId, p.name, p.sex, p.dateOfBirth, p.contactNumber, p.dateRegistered});
+        String sex = (String) cmbSex.getSelectedItem();
+        String search = txtSearch.getText().trim();
+        loadedSex = sex;
+        loadedSearch = search;
+        model.reload(PagedTableModel.source(
+                (before, size) -> PatientDAO.listPage(sex, search, before, size),
+                () -> PatientDAO.count(sex, search)));
+    }
+
+    @Override
+    public void refresh() {
+        load();
+    }
+
+    /**
+     * Insert, update or remove the one affected row. Text searches are
+     * evaluated by the database (FULLTEXT), so with one active the list is
+     * reloaded instead.
+     */
+    private void applyChange(ChangeEvent<Patient> change) {
+        SearchTerms terms = SearchTerms.parse(loadedSearch);
+        if (terms != null && !terms.isId()) {
+            BaseDashboardFrame.requestRefresh(this); // reloads when visible
+            return;
         }
+        if (change.after != null && matchesFilter(change.after, terms)) {
+            model.putRow(change.after);
+        } else if (change.before != null && matchesFilter(change.before, terms)) {
+            model.removeRow(change.id);
+        }
+    }
+
+    private boolean matchesFilter(Patient p, SearchTerms terms) {
+        if (loadedSex != null && !loadedSex.isEmpty() && !loadedSex.equalsIgnoreCase(p.sex)) {
+            return false;
+        }
+        return terms == null || terms.getId() == p.patientId;
     }
 
     private void openForm(Patient p) {
-        Patient_Form_Panel f = new Patient_Form_Panel(p, this::load);
+        Patient_Form_Panel f = new Patient_Form_Panel(p, null); // the save arrives as a patient.changed event
         JDialog d = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), p == null ? "Add Patient" : "Edit Patient", true);
         d.getContentPane().add(f);
         d.pack();
@@ -77,7 +120,14 @@ public class Patient_List_Panel extends JPanel {
             return;
         }
         int id = (int) model.getValueAt(r, 0);
+        // read fresh, not from PatientCache: saving a cached copy that predates
+        // another client's edit would overwrite that edit
+        PatientCache.invalidate(id);
         Patient p = PatientDAO.findById(id);
+        if (p == null) {
+            JOptionPane.showMessageDialog(this, "This patient no longer exists.");
+            return;
+        }
         openForm(p);
     }
 
@@ -89,8 +139,7 @@ public class Patient_List_Panel extends JPanel {
         }
         int id = (int) model.getValueAt(r, 0);
         if (JOptionPane.showConfirmDialog(this, "Delete selected patient?") == JOptionPane.YES_OPTION) {
-            PatientDAO.delete(id);
-            load();
+            PatientDAO.delete(id); // removes the row through patient.changed
         }
     }
 
@@ -101,9 +150,10 @@ public class Patient_List_Panel extends JPanel {
             return;
         }
         int id = (int) model.getValueAt(r, 0);
-        Patient p = PatientDAO.findById(id);
+        Patient p = PatientCache.get(id);
         Patient_Report_Panel report = new Patient_Report_Panel(p);
         JDialog d = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Patient Details", true);
+        d.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE); // releases the report's EventBus binding
         d.getContentPane().add(report);
         d.pack();
         d.setLocationRelativeTo(this);
@@ -4,7 +4,10 @@ package Main;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Patient report panel: show "Registered By" using the resolved name if
@@ -15,6 +18,8 @@ public class Patient_Report_Panel extends JPanel {
     private Patient patient;
     private DefaultTableModel testsModel;
     private JTable testsTable;
+    private BackgroundLoader loader;
+    private final JLabel lblRegisteredBy = new JLabel();
 
     public Patient_Report_Panel(Patient p) {
         this.patient = p;
@@ -45,12 +50,9 @@ public class Patient_Report_Panel extends JPanel {
 
         // Show Registered By (resolved name)
         content.add(new JLabel("Registered By:"));
-        String reg = p.registeredBy;
-        if ((reg == null || reg.isEmpty()) && p.registeredById > 0) {
-            Account a = AccountDAO.findById(p.registeredById);
-            reg = a != null ? (a.fullName != null && !a.fullName.isEmpty() ? a.fullName : a.username) : String.valueOf(p.registeredById);
-        }
-        content.add(new JLabel(reg != null ? reg : ""));
+        // memory only here; loadTests resolves the account in the background and sets it again
+        lblRegisteredBy.setText(registeredBy());
+        content.add(lblRegisteredBy);
 
         add(content, BorderLayout.NORTH);
 
@@ -84,20 +86,75 @@ public class Patient_Report_Panel extends JPanel {
         });
         bottom.add(btnRefresh);
         bottom.add(btnView);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        bottom.add(busy);
+        loader = new BackgroundLoader(busy);
         add(bottom, BorderLayout.SOUTH);
 
         loadTests();
 
-        EventBus.addListener("test.saved", (evt, payload) -> SwingUtilities.invokeLater(this::loadTests));
+        EventBus.bindChanges(this, "test.changed", this::applyChange); // delivered on the EDT, dropped when the dialog is disposed
     }
 
-    private void loadTests() {
-        testsModel.setRowCount(0);
-        List<TestRecord> list = TestRecordDAO.listAll("", String.valueOf(patient.patientId));
-        for (TestRecord tr : list) {
-            if (tr.patientId == patient.patientId) {
-                testsModel.addRow(new Object[]{tr.testId, tr.testName, tr.category, tr.status, tr.dateConducted, tr.technician});
+    /**
+     * Insert, update or remove the row of a changed test of this patient.
+     * Rows are kept newest first, like listByPatient.
+     */
+    private void applyChange(ChangeEvent<TestRecordRow> change) {
+        if (loader.isBusy()) {
+            loadTests(); // the list in flight may predate this change
+            return;
+        }
+        int row = -1;
+        for (int i = 0; i < testsModel.getRowCount(); i++) {
+            if ((int) testsModel.getValueAt(i, 0) == change.id) {
+                row = i;
+                break;
+            }
+        }
+        TestRecordRow tr = change.after;
+        if (tr == null || tr.patientId != patient.patientId) {
+            if (row >= 0) {
+                testsModel.removeRow(row);
+            }
+            return;
+        }
+        Object[] cells = {tr.testId, tr.testName, tr.category, tr.status, tr.dateConducted, AccountDirectory.displayNameOf(tr.technician)};
+        if (row >= 0) {
+            for (int c = 0; c < cells.length; c++) {
+                testsModel.setValueAt(cells[c], row, c);
             }
+            return;
+        }
+        int at = 0;
+        while (at < testsModel.getRowCount() && (int) testsModel.getValueAt(at, 0) > tr.testId) {
+            at++;
         }
+        testsModel.insertRow(at, cells);
+    }
+
+    private String registeredBy() {
+        return patient.registeredById > 0 ? AccountDirectory.displayName(patient.registeredById) : AccountDirectory.displayNameOf(patient.registeredBy);
+    }
+
+    private void loadTests() {
+        int patientId = patient.patientId;
+        loader.load(() -> {
+            List<TestRecord> list = TestRecordDAO.listByPatient(patientId);
+            // account references of the whole report in one pass, off the EDT (older rows store a username in registered_by)
+            AccountDirectory.resolveIds(List.of(patient.registeredById));
+            Set<String> usernames = list.stream().map(tr -> tr.technician).collect(Collectors.toCollection(HashSet::new));
+            if (patient.registeredById <= 0) {
+                usernames.add(patient.registeredBy);
+            }
+            AccountDirectory.resolveUsernames(usernames);
+            return list;
+        }, list -> {
+            lblRegisteredBy.setText(registeredBy());
+            testsModel.setRowCount(0);
+            for (TestRecord tr : list) {
+                testsModel.addRow(new Object[]{tr.testId, tr.testName, tr.category, tr.status, tr.dateConducted, AccountDirectory.displayNameOf(tr.technician)});
+            }
+        });
     }
 }
@@ -11,7 +11,7 @@ import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 
-public class ProfilePanel extends JPanel {
+public class ProfilePanel extends JPanel implements Refreshable {
 
     private JTextField txtFullName, txtUsername, txtEmail, txtContact;
     private JPasswordField pwdPass, pwdConfirm;
@@ -19,6 +19,7 @@ public class ProfilePanel extends JPanel {
     private JLabel lblProfileImage;
     private String imagePath;
     private JPanel chartHolder;
+    private final BackgroundLoader chartLoader = new BackgroundLoader(null);
 
     public ProfilePanel() {
         setLayout(new BorderLayout());
@@ -169,38 +170,42 @@ public class ProfilePanel extends JPanel {
         refreshChart();
     }
 
+    @Override
+    public void refresh() {
+        refreshChart();
+    }
+
     private void refreshChart() {
-        try (Connection c = DBConnection.getConnection()) {
-            int patients = 0, pending = 0, completed = 0;
-            try (Statement s = c.createStatement()) {
-                try (ResultSet rs = s.executeQuery("SELECT COUNT(*) AS c FROM patients")) {
-                    if (rs.next()) {
-                        patients = rs.getInt("c");
-                    }
-                }
-                try (ResultSet rs = s.executeQuery("SELECT COUNT(*) AS c FROM tests WHERE status = 'Pending'")) {
-                    if (rs.next()) {
-                        pending = rs.getInt("c");
-                    }
-                }
-                try (ResultSet rs = s.executeQuery("SELECT COUNT(*) AS c FROM tests WHERE status = 'Completed'")) {
-                    if (rs.next()) {
-                        completed = rs.getInt("c");
-                    }
-                }
+        chartLoader.load(ProfilePanel::querySummary, dataset -> {
+            if (dataset == null) {
+                return;
             }
-            DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-            dataset.addValue(patients, "Count", "Patients");
-            dataset.addValue(pending, "Count", "Pending Tests");
-            dataset.addValue(completed, "Count", "Completed Tests");
             JFreeChart chart = ChartFactory.createBarChart("System Summary", "Category", "Count", dataset);
             ChartPanel cp = new ChartPanel(chart);
             chartHolder.removeAll();
             chartHolder.add(cp, BorderLayout.CENTER);
             chartHolder.revalidate();
             chartHolder.repaint();
+        });
+    }
+
+    /**
+     * Summary counts for the chart, read from test_stats; runs on a loader
+     * thread.
+     */
+    private static DefaultCategoryDataset querySummary() {
+        try (Connection c = DBConnection.getConnection()) {
+            int patients = TestStats.count(c, TestStats.PATIENTS, "");
+            int pending = TestStats.count(c, TestStats.STATUS, "Pending");
+            int completed = TestStats.count(c, TestStats.STATUS, "Completed");
+            DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+            dataset.addValue(patients, "Count", "Patients");
+            dataset.addValue(pending, "Count", "Pending Tests");
+            dataset.addValue(completed, "Count", "Completed Tests");
+            return dataset;
         } catch (Exception ex) {
             ex.printStackTrace();
+            return null;
         }
     }
 }
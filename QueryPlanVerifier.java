@@ -0,0 +1,212 @@
+// QueryPlanVerifier.java
+// Runs EXPLAIN on the DAO queries and fails if one falls back to a full table
+// scan although it filters or joins on an indexable column. Also reports
+// declared SchemaIndexes that are missing from the database; with --repair it
+// creates them first (e.g. after an index was dropped by hand).
+// Run it against a database with realistic row counts: on near-empty tables
+// MySQL may prefer a scan even when a usable index exists, which is reported
+// as a warning, not a failure.
+// Usage:
+//   java -cp ".;libs/*" Main.QueryPlanVerifier [--repair]
+package Main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class QueryPlanVerifier {
+
+    /**
+     * Binds the parameters of one checked query, the way its DAO does.
+     */
+    private interface Binder {
+
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * One DAO query with representative parameter values. fullScanReason is
+     * set for queries that scan by design (e.g. unfiltered counts, leading
+     * wildcard LIKE).
+     */
+    private static class Check {
+
+        final String name;
+        final String sql;
+        final Binder binder;
+        final String fullScanReason;
+
+        Check(String name, String sql, Binder binder, String fullScanReason) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+            this.fullScanReason = fullScanReason;
+        }
+    }
+
+    private static final int PAGE = 100;
+
+    private static final List<Check> CATALOG = new ArrayList<>();
+
+    /**
+     * A query built by a DAO's own SQL and bind methods.
+     */
+    private static void check(String name, String sql, Binder binder) {
+        CATALOG.add(new Check(name, sql, binder, null));
+    }
+
+    /**
+     * A fixed-text query (a key lookup the DAO writes as a literal).
+     */
+    private static void check(String name, String sql, Object... params) {
+        CATALOG.add(new Check(name, sql, bindAll(params), null));
+    }
+
+    private static void scanAllowed(String name, String reason, String sql, Binder binder) {
+        CATALOG.add(new Check(name, sql, binder, reason));
+    }
+
+    private static Binder bindAll(Object... params) {
+        return ps -> {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+        };
+    }
+
+    private static void testRows(String name, String status, String search, int before) {
+        check("TestRecordDAO.listRowsPage " + name, TestRecordDAO.pageSql(status, search, before, PAGE),
+                ps -> TestRecordDAO.bindPage(ps, status, search, before, PAGE));
+    }
+
+    private static void patients(String name, String search, int before) {
+        check("PatientDAO.listPage " + name, PatientDAO.pageSql(null, search, before, PAGE),
+                ps -> PatientDAO.bindPage(ps, null, search, before, PAGE));
+    }
+
+    private static void patientSearch(String name, String term) {
+        SearchTerms terms = SearchTerms.parse(term);
+        check("PatientDAO.search " + name, PatientDAO.searchSql(terms), ps -> PatientDAO.bindSearch(ps, terms, 20));
+    }
+
+    private static void activityLog(String name, String search) {
+        check("ActivityLogDAO.listPage " + name, ActivityLogDAO.pageSql(search, 0, PAGE),
+                ps -> ActivityLogDAO.bindPage(ps, search, 0, PAGE));
+    }
+
+    static {
+        // search inputs pick the SearchTerms route: "42" id, "cholesterol" FULLTEXT, "Jo" prefix LIKE
+
+        // TestRecordDAO
+        testRows("status", "Pending", null, 0);
+        testRows("next page", "Pending", null, 1000);
+        testRows("first page", null, null, 0);
+        testRows("search id", null, "42", 0);
+        scanAllowed("TestRecordDAO.listRowsPage search text", "MATCH on tests OR patient subquery is checked per row",
+                TestRecordDAO.pageSql(null, "cholesterol", 0, PAGE), ps -> TestRecordDAO.bindPage(ps, null, "cholesterol", 0, PAGE));
+        testRows("search prefix", null, "Jo", 0);
+        check("TestRecordDAO.listByPatient", "SELECT * FROM tests WHERE patient_id = ? ORDER BY test_id DESC", 1);
+        check("TestRecordDAO.patientRows", TestRecordDAO.PATIENT_ROWS, 1);
+        check("TestRecordDAO.countRows status", TestRecordDAO.countSql("Pending", null), ps -> TestRecordDAO.bindFilters(ps, 1, "Pending", null));
+        check("TestRecordDAO.findById", "SELECT * FROM tests WHERE test_id = ?", 1);
+        check("TestRecordDAO.getParameters", "SELECT * FROM parameters WHERE test_id = ? ORDER BY parameter_id", 1);
+
+        // TestStats (dashboard and profile counts)
+        check("TestStats.counts", "SELECT dim_value, test_count FROM test_stats WHERE dimension = ? AND test_count > 0 ORDER BY dim_value", "status");
+        check("TestStats.count", "SELECT test_count FROM test_stats WHERE dimension = ? AND dim_value = ?", "status", "Pending");
+
+        // TestRollupEngine (trend charts)
+        check("TestRollupEngine.catchUp", "SELECT day, category, status, SUM(delta) FROM test_day_changes"
+                + " WHERE change_id > ? AND change_id <= ? GROUP BY day, category, status", 0, 1000);
+        check("TestRollupEngine.since", "SELECT day, category, status, test_count FROM test_daily_rollup WHERE day >= ? AND test_count > 0 ORDER BY day", "2024-01-01");
+
+        // PatientDAO
+        patients("first page", null, 0);
+        patients("next page", null, 1000);
+        check("PatientDAO.findById", "SELECT * FROM patients WHERE patient_id = ?", 1);
+        patients("search text", "john", 0);
+        patients("search prefix", "Jo", 0);
+        patientSearch("ranked", "john");
+        patientSearch("digits", "0917");
+        patientSearch("prefix", "Jo");
+
+        // AccountDAO
+        check("AccountDAO.authenticate", "SELECT * FROM accounts WHERE username = ?", "admin");
+        check("AccountDAO.usernameExists", "SELECT COUNT(*) AS c FROM accounts WHERE username = ?", "admin");
+        check("AccountDAO.findById", "SELECT * FROM accounts WHERE account_id = ?", 1);
+        check("AccountDAO.listPage", AccountDAO.pageSql(null, null, 0, PAGE), ps -> AccountDAO.bindPage(ps, null, null, 0, PAGE));
+
+        // ActivityLogDAO
+        activityLog("first page", null);
+        check("activity log time range", "SELECT * FROM activity_log WHERE timestamp >= ? ORDER BY timestamp DESC", "2024-01-01 00:00:00");
+        activityLog("search text", "saved");
+        activityLog("search id", "42");
+        activityLog("search prefix", "ad");
+
+        // TemplateDAO (reads go through TemplateCache)
+        scanAllowed("TemplateDAO.loadAllWithParameters", "loads every template once, for TemplateCache",
+                "SELECT t.id, t.name, t.category, t.description, p.id AS param_id, p.param_name, p.units, p.reference_range, p.critical_values"
+                + " FROM test_templates t LEFT JOIN template_parameters p ON p.template_id = t.id ORDER BY t.name, t.id, p.id", bindAll());
+    }
+
+    public static void main(String[] args) {
+        DatabaseInit.init();
+        int failures = 0;
+        int warnings = 0;
+        try (Connection c = DBConnection.getConnection()) {
+            if (args.length > 0 && "--repair".equals(args[0])) {
+                System.out.println("Created " + SchemaIndexes.apply(c) + " missing indexes.");
+            }
+            for (SchemaIndexes.Index idx : SchemaIndexes.missing(c)) {
+                System.out.println("MISSING INDEX  " + idx.name + " on " + idx);
+                failures++;
+            }
+            for (Check chk : CATALOG) {
+                List<String> problems = new ArrayList<>();
+                boolean possibleIndex = false;
+                try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + chk.sql)) {
+                    chk.binder.bind(ps);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String table = rs.getString("table");
+                            String type = rs.getString("type");
+                            String possibleKeys = rs.getString("possible_keys");
+                            if ("ALL".equals(type)) {
+                                problems.add(table + ": full scan, rows=" + rs.getString("rows")
+                                        + (possibleKeys != null ? ", possible_keys=" + possibleKeys : ""));
+                                possibleIndex |= possibleKeys != null;
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    System.out.println("ERROR          " + chk.name + ": " + e.getMessage());
+                    failures++;
+                    continue;
+                }
+                if (problems.isEmpty()) {
+                    System.out.println("OK             " + chk.name);
+                } else if (chk.fullScanReason != null) {
+                    System.out.println("SCAN (allowed) " + chk.name + " - " + chk.fullScanReason + ": " + problems);
+                } else if (possibleIndex) {
+                    // the optimizer chose a scan over a usable index: small table
+                    System.out.println("WARN           " + chk.name + ": " + problems);
+                    warnings++;
+                } else {
+                    System.out.println("FAIL           " + chk.name + ": " + problems);
+                    failures++;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failures++;
+        }
+        DBConnection.close();
+        System.out.println(CATALOG.size() + " queries checked, " + failures + " failures, " + warnings + " warnings.");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
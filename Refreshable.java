@@ -0,0 +1,13 @@
+// Refreshable.java
+// Dashboard cards that can reload their data in place.
+package Main;
+
+/**
+ * A dashboard card that can bring its data up to date without being
+ * recreated. BaseDashboardFrame calls refresh() on the EDT when a dirty card
+ * is shown, or right away if it is the visible card.
+ */
+public interface Refreshable {
+
+    void refresh();
+}
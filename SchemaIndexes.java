@@ -0,0 +1,246 @@
+// SchemaIndexes.java
+// The secondary indexes the DAO queries rely on, applied by a DatabaseInit migration.
+package Main;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Declared secondary index set. An index counts as present when the table
+ * already has any index (including a foreign-key or unique index) whose
+ * leading columns are the declared columns, in order, so nothing is created
+ * twice under a different name.
+ *
+ * Access paths covered:
+ * tests(status)           status filter, GROUP BY status, status counts
+ * tests(patient_id)       tests of one patient, join from patients
+ * tests(category)         GROUP BY category on the dashboard
+ * tests(date_conducted)   date ranges for trends
+ * parameters(test_id)     TestRecordDAO.getParameters
+ * template_parameters(template_id)
+ * patients(name)          name prefix search, ordered patient pickers
+ * accounts(username)      login lookup
+ * activity_log(timestamp) time-ordered audit queries
+ * activity_log(target_id) numeric search in the activity log
+ * activity_log(user), activity_log(action)
+ *                         short (prefix LIKE) search in the activity log
+ *
+ * FULLTEXT indexes back the MATCH ... AGAINST searches (see SearchTerms);
+ * a MATCH must name exactly the columns of one FULLTEXT index:
+ * patients(name, contact_number, email), tests(test_name, category),
+ * activity_log(user, action, description). A FULLTEXT index only counts as
+ * present if an existing FULLTEXT index has the same columns.
+ *
+ * Each migration that creates indexes gets its own list below, which is
+ * frozen once the migration has shipped, like the migration itself: a fresh
+ * database then builds every index at the version that introduced it.
+ * Adding an index: add a new list (e.g. V9_...) with it, a DatabaseInit
+ * migration that calls apply(c, thatList), and add the list to ALL.
+ *
+ * ALL is the declared set as of the latest migration; apply(c) with it
+ * repairs drift (an index dropped by hand), see QueryPlanVerifier --repair.
+ */
+public class SchemaIndexes {
+
+    public static class Index {
+
+        public final String table;
+        public final String name;
+        public final List<String> columns;
+        public final boolean fullText;
+
+        Index(String table, String name, String... columns) {
+            this(false, table, name, columns);
+        }
+
+        private Index(boolean fullText, String table, String name, String... columns) {
+            this.table = table;
+            this.name = name;
+            this.columns = Arrays.asList(columns);
+            this.fullText = fullText;
+        }
+
+        static Index fullText(String table, String name, String... columns) {
+            return new Index(true, table, name, columns);
+        }
+
+        String ddl() {
+            return (fullText ? "CREATE FULLTEXT INDEX " : "CREATE INDEX ") + name + " ON " + table + " (" + String.join(", ", columns) + ")";
+        }
+
+        @Override
+        public String toString() {
+            return table + "(" + String.join(", ", columns) + ")";
+        }
+    }
+
+    /**
+     * Migration 5, "managed secondary index set". Shipped: do not edit.
+     */
+    public static final List<Index> V5_SECONDARY = List.of(
+            new Index("tests", "idx_tests_status", "status"),
+            new Index("tests", "idx_tests_patient", "patient_id"),
+            new Index("tests", "idx_tests_category", "category"),
+            new Index("tests", "idx_tests_date", "date_conducted"),
+            new Index("parameters", "idx_parameters_test", "test_id"),
+            new Index("template_parameters", "idx_template_parameters_template", "template_id"),
+            new Index("patients", "idx_patients_name", "name"),
+            new Index("accounts", "idx_accounts_username", "username"),
+            new Index("activity_log", "idx_activity_log_time", "timestamp"),
+            new Index("activity_log", "idx_activity_log_target", "target_id")
+    );
+
+    /**
+     * Migration 6, "FULLTEXT search indexes". Shipped: do not edit.
+     */
+    public static final List<Index> V6_FULLTEXT = List.of(
+            Index.fullText("patients", "ft_patients_search", "name", "contact_number", "email"),
+            Index.fullText("tests", "ft_tests_search", "test_name", "category"),
+            Index.fullText("activity_log", "ft_activity_log_search", "user", "action", "description")
+    );
+
+    /**
+     * Migration 9, "activity log prefix search indexes": the activity log's
+     * short-input search is "user LIKE 'x%' OR action LIKE 'x%'", which needs
+     * an index on each column (index merge) not to scan the whole log.
+     */
+    public static final List<Index> V9_ACTIVITY_PREFIX = List.of(
+            new Index("activity_log", "idx_activity_log_user", "user"),
+            new Index("activity_log", "idx_activity_log_action", "action")
+    );
+
+    public static final List<Index> ALL = concat(V5_SECONDARY, V6_FULLTEXT, V9_ACTIVITY_PREFIX);
+
+    @SafeVarargs
+    private static List<Index> concat(List<Index>... lists) {
+        List<Index> all = new ArrayList<>();
+        for (List<Index> l : lists) {
+            all.addAll(l);
+        }
+        return List.copyOf(all);
+    }
+
+    /**
+     * Declared indexes that have no matching index in the database.
+     */
+    public static List<Index> missing(Connection c) throws SQLException {
+        return missing(c, ALL);
+    }
+
+    private static List<Index> missing(Connection c, List<Index> declared) throws SQLException {
+        Map<String, List<Existing>> existing = existingIndexes(c);
+        List<Index> missing = new ArrayList<>();
+        for (Index idx : declared) {
+            if (!covered(existing.get(idx.table.toLowerCase(Locale.ROOT)), idx)) {
+                missing.add(idx);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Create every missing index of ALL (drift repair). Returns how many were
+     * created.
+     */
+    public static int apply(Connection c) throws SQLException {
+        return apply(c, ALL);
+    }
+
+    /**
+     * Create the missing indexes of one migration's list. Returns how many
+     * were created.
+     */
+    public static int apply(Connection c, List<Index> indexes) throws SQLException {
+        int created = 0;
+        try (Statement s = c.createStatement()) {
+            for (Index idx : missing(c, indexes)) {
+                long start = System.currentTimeMillis();
+                s.execute(idx.ddl());
+                System.out.println("Created index " + idx.name + " on " + idx + " in " + (System.currentTimeMillis() - start) + " ms");
+                created++;
+            }
+        }
+        return created;
+    }
+
+    private static boolean covered(List<Existing> tableIndexes, Index idx) {
+        if (tableIndexes == null) {
+            return false;
+        }
+        List<String> columns = idx.columns;
+        for (Existing e : tableIndexes) {
+            List<String> cols = e.columns;
+            if (e.fullText != idx.fullText) {
+                continue;
+            }
+            if (idx.fullText) {
+                if (cols.size() == columns.size() && lower(cols).containsAll(lower(columns))) {
+                    return true;
+                }
+            } else if (cols.size() >= columns.size()) {
+                boolean match = true;
+                for (int i = 0; i < columns.size() && match; i++) {
+                    match = cols.get(i).equalsIgnoreCase(columns.get(i));
+                }
+                if (match) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<String> lower(List<String> names) {
+        List<String> out = new ArrayList<>();
+        for (String n : names) {
+            out.add(n.toLowerCase(Locale.ROOT));
+        }
+        return out;
+    }
+
+    private static class Existing {
+
+        final List<String> columns = new ArrayList<>();
+        boolean fullText;
+    }
+
+    /**
+     * lower-case table -> its indexes, one STATISTICS query.
+     */
+    private static Map<String, List<Existing>> existingIndexes(Connection c) throws SQLException {
+        Map<String, Map<String, TreeMap<Integer, String>>> raw = new HashMap<>();
+        Map<String, Boolean> fullText = new HashMap<>();
+        String sql = "SELECT TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME, INDEX_TYPE FROM information_schema.STATISTICS"
+                + " WHERE TABLE_SCHEMA = DATABASE()";
+        try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            while (rs.next()) {
+                String table = rs.getString(1).toLowerCase(Locale.ROOT);
+                raw.computeIfAbsent(table, k -> new HashMap<>())
+                        .computeIfAbsent(rs.getString(2), k -> new TreeMap<>())
+                        .put(rs.getInt(3), rs.getString(4));
+                fullText.put(table + "." + rs.getString(2), "FULLTEXT".equalsIgnoreCase(rs.getString(5)));
+            }
+        }
+        Map<String, List<Existing>> result = new HashMap<>();
+        for (Map.Entry<String, Map<String, TreeMap<Integer, String>>> t : raw.entrySet()) {
+            List<Existing> list = new ArrayList<>();
+            for (Map.Entry<String, TreeMap<Integer, String>> idx : t.getValue().entrySet()) {
+                Existing e = new Existing();
+                e.columns.addAll(idx.getValue().values());
+                e.fullText = fullText.get(t.getKey() + "." + idx.getKey());
+                list.add(e);
+            }
+            result.put(t.getKey(), list);
+        }
+        return result;
+    }
+}
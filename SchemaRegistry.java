@@ -0,0 +1,81 @@
+// SchemaRegistry.java
+// In-memory copy of the table/column layout of the application database.
+package Main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "does this table / column exist" from memory. The layout is loaded
+ * once, on first use, with a single information_schema.COLUMNS query for the
+ * current database, and reloaded only when DatabaseInit (or another schema
+ * change in the app) calls refresh(). Names are matched case-insensitively.
+ */
+public class SchemaRegistry {
+
+    private static volatile Map<String, Set<String>> tables = null; // lower-case table -> lower-case columns
+
+    public static boolean hasTable(String table) {
+        return snapshot().containsKey(key(table));
+    }
+
+    public static boolean hasColumn(String table, String column) {
+        Set<String> cols = snapshot().get(key(table));
+        return cols != null && cols.contains(key(column));
+    }
+
+    /**
+     * Reload the layout on a new connection.
+     */
+    public static void refresh() {
+        try (Connection c = DBConnection.getConnection()) {
+            refresh(c);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reload the layout using the caller's connection (e.g. right after a
+     * migration in the same session).
+     */
+    public static synchronized void refresh(Connection c) throws SQLException {
+        Map<String, Set<String>> loaded = new HashMap<>();
+        String sql = "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()";
+        try (PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                loaded.computeIfAbsent(key(rs.getString(1)), k -> new HashSet<>()).add(key(rs.getString(2)));
+            }
+        }
+        for (Map.Entry<String, Set<String>> e : loaded.entrySet()) {
+            e.setValue(Collections.unmodifiableSet(e.getValue()));
+        }
+        tables = Collections.unmodifiableMap(loaded);
+    }
+
+    private static Map<String, Set<String>> snapshot() {
+        Map<String, Set<String>> t = tables;
+        if (t == null) {
+            synchronized (SchemaRegistry.class) {
+                if (tables == null) {
+                    refresh();
+                }
+                t = tables;
+            }
+        }
+        // still null if the database could not be reached; try again next time
+        return t != null ? t : Collections.emptyMap();
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,105 @@
+// SearchTerms.java
+// Turns the text of a list panel search box into an index-friendly query.
+package Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed search box input for the DAO search clauses. Three routes, in order:
+ *
+ * 1. Only digits (up to 9): an exact id, answered by a primary-key lookup.
+ * 2. Every word has at least FULLTEXT_MIN_TOKEN characters: a FULLTEXT
+ *    MATCH ... AGAINST in boolean mode, each word required and
+ *    prefix-matched ("+chol* +pan*"), ranked by relevance where the caller
+ *    orders by score.
+ * 3. Anything else (very short input): a prefix LIKE 'term%' on an indexed
+ *    column.
+ *
+ * None of the routes uses a leading-wildcard LIKE. Callers that also want
+ * digits to match text (e.g. a partial phone number in the patient picker)
+ * can add getDigitsQuery() to the id lookup.
+ */
+public class SearchTerms {
+
+    // InnoDB innodb_ft_min_token_size default; shorter words are not indexed
+    public static final int FULLTEXT_MIN_TOKEN = 3;
+
+    private final String text;
+    private final Integer id;
+    private final String booleanQuery;
+
+    private SearchTerms(String text, Integer id, String booleanQuery) {
+        this.text = text;
+        this.id = id;
+        this.booleanQuery = booleanQuery;
+    }
+
+    /**
+     * Parse a search box value; null for blank input (no filter).
+     */
+    public static SearchTerms parse(String search) {
+        if (search == null || search.trim().isEmpty()) {
+            return null;
+        }
+        String text = search.trim();
+        if (text.matches("\\d{1,9}")) {
+            return new SearchTerms(text, Integer.valueOf(text), null);
+        }
+        List<String> words = new ArrayList<>();
+        for (String w : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) {
+                words.add(w);
+            }
+        }
+        boolean fullText = !words.isEmpty();
+        for (String w : words) {
+            fullText &= w.length() >= FULLTEXT_MIN_TOKEN;
+        }
+        if (!fullText) {
+            return new SearchTerms(text, null, null);
+        }
+        StringBuilder q = new StringBuilder();
+        for (String w : words) {
+            if (q.length() > 0) {
+                q.append(' ');
+            }
+            q.append('+').append(w).append('*');
+        }
+        return new SearchTerms(text, null, q.toString());
+    }
+
+    public boolean isId() {
+        return id != null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * For id input of at least FULLTEXT_MIN_TOKEN digits, the boolean-mode
+     * prefix query for those digits ("+0917*"); null otherwise.
+     */
+    public String getDigitsQuery() {
+        return id != null && text.length() >= FULLTEXT_MIN_TOKEN ? "+" + text + "*" : null;
+    }
+
+    public boolean isFullText() {
+        return booleanQuery != null;
+    }
+
+    /**
+     * Argument for MATCH ... AGAINST (? IN BOOLEAN MODE).
+     */
+    public String getBooleanQuery() {
+        return booleanQuery;
+    }
+
+    /**
+     * 'term%' with LIKE wildcards in the term escaped.
+     */
+    public String getPrefixPattern() {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
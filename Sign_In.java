@@ -118,6 +118,9 @@ public class Sign_In extends BaseFrame {
         Account a = AccountDAO.authenticate(u, p);
         if (a != null) {
             Session.setCurrentUser(a);
+            // fresh account names for the tables, loaded while the dashboard opens
+            AccountDirectory.clear();
+            AccountDirectory.warmAsync();
             lblMsg.setText("Welcome, " + a.fullName);
             SwingUtilities.invokeLater(() -> {
                 dispose();
@@ -154,6 +157,9 @@ public class Sign_In extends BaseFrame {
             return;
         }
 
+        // Log long-running events on the EDT (see Admin Dashboard > Diagnostics)
+        EdtWatchdog.install();
+
         // Show splash -> DB init -> SignIn
         SwingUtilities.invokeLater(() -> {
             Splash_Screen splash = new Splash_Screen();
@@ -113,6 +113,7 @@ public class Splash_Screen extends JWindow {
             // Progress animation while DB init runs in background
             Thread dbThread = new Thread(() -> {
                 DatabaseInit.init();
+                TemplateCache.load(); // one query; template lookups are in memory from here on
             }, "DB-Init-Thread");
             dbThread.start();
 
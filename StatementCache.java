@@ -0,0 +1,315 @@
+// StatementCache.java
+// Per-connection LRU cache of prepared statements, keyed by SQL text.
+package Main;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Each pooled physical connection owns one StatementCache. DAO code keeps
+ * calling prepareStatement(sql) and closing the statement as before; the
+ * pool routes the call here, so the second and later calls for the same SQL
+ * on the same connection reuse the already prepared (server-side) statement
+ * instead of parsing it again. close() on a cached statement clears its
+ * parameters, closes a result set left open and puts it back in the cache.
+ * Statement settings a borrower changed (max rows, fetch size, query timeout
+ * ...) are set back to the driver defaults first, so they never carry over
+ * to the next borrower of the same SQL; a statement set to
+ * closeOnCompletion is not reused.
+ *
+ * Hit/miss counters are global across all connections.
+ */
+public class StatementCache {
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    // statement-level settings reset() puts back to the defaults
+    private static final Set<String> SETTINGS = Set.of("setMaxRows", "setLargeMaxRows", "setFetchSize", "setQueryTimeout",
+            "setMaxFieldSize", "setFetchDirection", "setEscapeProcessing", "setCursorName", "closeOnCompletion");
+
+    private final int capacity;
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public StatementCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static String summary() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        return "statement cache: " + h + " hits, " + m + " misses, " + evictions.get() + " evictions"
+                + (total > 0 ? String.format(" (%.1f%% hit rate)", 100.0 * h / total) : "");
+    }
+
+    /**
+     * Return a cached statement for sql, preparing it on physical if needed.
+     *
+     * @param owner the pooled connection proxy, returned by getConnection()
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or
+     * NO_GENERATED_KEYS
+     */
+    synchronized PreparedStatement prepare(Connection physical, Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry e = entries.get(key);
+        if (e != null && !e.inUse) {
+            hits.incrementAndGet();
+            return e.checkOut(owner);
+        }
+        misses.incrementAndGet();
+        PreparedStatement ps = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (e != null || capacity <= 0) {
+            // Same SQL already checked out on this connection (nested use) or caching disabled
+            return ps;
+        }
+        e = new Entry(ps);
+        entries.put(key, e);
+        evictOverflow();
+        return e.checkOut(owner);
+    }
+
+    /**
+     * Called when the owning connection goes back to the pool: statements the
+     * borrower never closed become available again.
+     */
+    synchronized void releaseAll() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (!e.inUse) {
+                continue;
+            }
+            if (reset(e)) {
+                e.checkIn();
+            } else {
+                it.remove();
+                e.closePhysical();
+            }
+        }
+    }
+
+    /**
+     * Make a returned statement look freshly prepared: no parameters, no
+     * batch, no open result set, default settings.
+     *
+     * @return false if it cannot be reused
+     */
+    private static boolean reset(Entry e) {
+        try {
+            if (e.closeOnCompletion) {
+                return false;
+            }
+            PreparedStatement ps = e.physical;
+            ResultSet rs = ps.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            ps.clearParameters();
+            ps.clearBatch();
+            ps.clearWarnings();
+            if (e.settingsChanged) {
+                ps.setMaxRows(0);
+                ps.setFetchSize(0);
+                ps.setQueryTimeout(0);
+                ps.setMaxFieldSize(0);
+                ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+                ps.setEscapeProcessing(true);
+                ps.setCursorName(null);
+                e.settingsChanged = false;
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    synchronized void closeAll() {
+        for (Entry e : entries.values()) {
+            e.closePhysical();
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry e = it.next();
+            if (e.inUse) {
+                continue;
+            }
+            it.remove();
+            e.closePhysical();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void checkIn(Entry e) {
+        e.checkIn();
+    }
+
+    private synchronized void drop(Entry e) {
+        entries.values().remove(e);
+        e.closePhysical();
+    }
+
+    private static final class Key {
+
+        final String sql;
+        final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return autoGeneratedKeys == k.autoGeneratedKeys && sql.equals(k.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys);
+        }
+    }
+
+    private final class Entry {
+
+        final PreparedStatement physical;
+        boolean inUse = false;
+        boolean settingsChanged = false; // a SETTINGS method was called since the last reset
+        boolean closeOnCompletion = false;
+        Handle handle;
+
+        Entry(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            inUse = true;
+            handle = new Handle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handle);
+        }
+
+        void checkIn() {
+            inUse = false;
+            if (handle != null) {
+                handle.closed = true;
+                handle = null;
+            }
+        }
+
+        void closePhysical() {
+            checkIn();
+            try {
+                physical.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Invocation handler for one checkout of a cached statement.
+     */
+    private final class Handle implements InvocationHandler {
+
+        final Entry entry;
+        final Connection owner;
+        volatile boolean closed = false;
+
+        Handle(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed.");
+            }
+            if (SETTINGS.contains(method.getName())) {
+                synchronized (StatementCache.this) {
+                    entry.settingsChanged = true;
+                    if ("closeOnCompletion".equals(method.getName())) {
+                        entry.closeOnCompletion = true;
+                    }
+                }
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void giveBack() {
+            if (reset(entry)) {
+                checkIn(entry);
+            } else {
+                // statement is in a bad state, do not hand it out again
+                drop(entry);
+            }
+        }
+    }
+
+    static boolean isCacheable(Method method) {
+        Class<?>[] p = method.getParameterTypes();
+        return "prepareStatement".equals(method.getName())
+                && (p.length == 1 || (p.length == 2 && p[1] == int.class))
+                && p[0] == String.class;
+    }
+
+    static int autoGeneratedKeys(Object[] args) {
+        return args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+    }
+}
@@ -9,22 +9,18 @@ import javax.swing.*;
  */
 public class Technician_Dashboard extends BaseDashboardFrame {
 
-    private Technician_Dashboard_Welcome_Panel welcomePanel;
-    private Patient_List_Panel patientListPanel = new Patient_List_Panel();
-    private Test_Record_List_Panel testListPanel = new Test_Record_List_Panel();
-    private ProfilePanel profilePanel = new ProfilePanel();
-
     public Technician_Dashboard() {
         super("Technician Dashboard - LabLink");
         buildMenu();
         buildCards();
         setUserLabel(Session.getCurrentUser().fullName + " (" + Session.getCurrentUser().role + ")");
-        show("dashboard");
+        showCard("dashboard");
 
         // Listen for "open.tests.status" to open tests and filter by status
-        EventBus.addListener("open.tests.status", (evt, payload) -> SwingUtilities.invokeLater(() -> {
+        EventBus.bind(cardPanel, "open.tests.status", (evt, payload) -> {
             try {
-                show("tests");
+                showCard("tests");
+                Test_Record_List_Panel testListPanel = (Test_Record_List_Panel) getCard("tests");
                 if (payload instanceof String) {
                     testListPanel.setStatusAndLoad((String) payload);
                 } else {
@@ -33,46 +29,29 @@ public class Technician_Dashboard extends BaseDashboardFrame {
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
-        }));
+        });
 
-        // Also refresh when tests saved
-        EventBus.addListener("test.saved", (evt, payload) -> SwingUtilities.invokeLater(() -> {
-            try {
-                // refresh welcome panel & lists
-                cardPanel.remove(welcomePanel);
-                welcomePanel = new Technician_Dashboard_Welcome_Panel();
-                cardPanel.add(welcomePanel, "dashboard");
-                testListPanel.load();
-                patientListPanel.load();
-                cardPanel.revalidate();
-                cardPanel.repaint();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }));
+        // Test changes alter the profile summary (refreshed once per burst);
+        // the welcome counts and the test list apply the test.changed deltas themselves
+        refreshOn("test.changed", "profile");
     }
 
     private void buildMenu() {
-        addMenuButton("Dashboard", () -> show("dashboard"));
-        addMenuButton("Patient Management", () -> show("patients"));
-        addMenuButton("Test Records", () -> show("tests"));
-        addMenuButton("Profile", () -> show("profile"));
+        addMenuButton("Dashboard", () -> showCard("dashboard"));
+        addMenuButton("Patient Management", () -> showCard("patients"));
+        addMenuButton("Test Records", () -> showCard("tests"));
+        addMenuButton("Profile", () -> showCard("profile"));
         addMenuButton("Logout", () -> {
             Session.clear();
-            dispose();
+            dispose(); // releases the EventBus bindings of this frame and its cards
             SwingUtilities.invokeLater(() -> new Sign_In().centerAndShow());
         });
     }
 
     private void buildCards() {
-        welcomePanel = new Technician_Dashboard_Welcome_Panel();
-        cardPanel.add(welcomePanel, "dashboard");
-        cardPanel.add(patientListPanel, "patients");
-        cardPanel.add(testListPanel, "tests");
-        cardPanel.add(profilePanel, "profile");
-    }
-
-    private void show(String id) {
-        cards.show(cardPanel, id);
+        registerCard("dashboard", Technician_Dashboard_Welcome_Panel::new);
+        registerCard("patients", Patient_List_Panel::new);
+        registerCard("tests", Test_Record_List_Panel::new);
+        registerCard("profile", ProfilePanel::new);
     }
 }
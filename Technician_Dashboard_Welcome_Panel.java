@@ -3,8 +3,7 @@ package Main;
 import javax.swing.*;
 import java.awt.*;
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.util.Map;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
@@ -15,8 +14,19 @@ import org.jfree.chart.plot.PiePlot;
  * Technician dashboard welcome panel: status summary list + pie chart. The
  * status text entries are clickable and will open the Test Records card,
  * filtered by the clicked status via EventBus ("open.tests.status" event).
+ * Counts follow "test.changed" events as deltas (old status -1, new status
+ * +1); the database is requeried every DBConfig.DASHBOARD_REQUERY_MS.
  */
-public class Technician_Dashboard_Welcome_Panel extends JPanel {
+public class Technician_Dashboard_Welcome_Panel extends JPanel implements Refreshable {
+
+    private final JButton btnPending;
+    private final JButton btnCompleted;
+    private final JButton btnVerified;
+    private final DefaultPieDataset ds;
+    private final JLabel footer;
+    private final BackgroundLoader loader;
+    private final Timer requeryTimer;
+    private int[] counts; // pending, completed, verified; null until loaded
 
     public Technician_Dashboard_Welcome_Panel() {
         setLayout(new BorderLayout());
@@ -44,38 +54,18 @@ public class Technician_Dashboard_Welcome_Panel extends JPanel {
         left.add(hint);
         left.add(Box.createRigidArea(new Dimension(0, 10)));
 
-        // Get counts
-        int pending = 0, completed = 0, verified = 0;
-        try (Connection c = DBConnection.getConnection(); Statement s = c.createStatement()) {
-            try (ResultSet rs = s.executeQuery("SELECT status, COUNT(*) AS c FROM tests GROUP BY status")) {
-                while (rs.next()) {
-                    String status = rs.getString("status");
-                    int cnt = rs.getInt("c");
-                    if ("Pending".equalsIgnoreCase(status)) {
-                        pending = cnt;
-                    } else if ("Completed".equalsIgnoreCase(status)) {
-                        completed = cnt;
-                    } else if ("Verified".equalsIgnoreCase(status)) {
-                        verified = cnt;
-                    }
-                }
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-
-        // Create clickable buttons that look like links
-        left.add(createStatusButton("Pending Tests: " + pending, "Pending"));
+        // Create clickable buttons that look like links; counts are filled in when loaded
+        btnPending = createStatusButton("Pending Tests: ...", "Pending");
+        btnCompleted = createStatusButton("Completed Tests: ...", "Completed");
+        btnVerified = createStatusButton("Verified Tests: ...", "Verified");
+        left.add(btnPending);
         left.add(Box.createRigidArea(new Dimension(0, 8)));
-        left.add(createStatusButton("Completed Tests: " + completed, "Completed"));
+        left.add(btnCompleted);
         left.add(Box.createRigidArea(new Dimension(0, 8)));
-        left.add(createStatusButton("Verified Tests: " + verified, "Verified"));
+        left.add(btnVerified);
 
         // Right: pie chart
-        DefaultPieDataset ds = new DefaultPieDataset();
-        ds.setValue("Pending", Math.max(1, pending));
-        ds.setValue("Completed", Math.max(1, completed));
-        ds.setValue("Verified", Math.max(1, verified));
+        ds = new DefaultPieDataset();
         JFreeChart chart = ChartFactory.createPieChart("Status Distribution", ds, true, true, false);
 
         // Use clear contrasting colors
@@ -96,12 +86,92 @@ public class Technician_Dashboard_Welcome_Panel extends JPanel {
 
         add(main, BorderLayout.CENTER);
 
-        JLabel footer = new JLabel("Loaded.", SwingConstants.LEFT);
-        footer.setBorder(BorderFactory.createEmptyBorder(8, 12, 12, 12));
-        add(footer, BorderLayout.SOUTH);
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bottom.setOpaque(false);
+        bottom.setBorder(BorderFactory.createEmptyBorder(4, 8, 8, 8));
+        footer = new JLabel("Loading...", SwingConstants.LEFT);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        bottom.add(footer);
+        bottom.add(busy);
+        add(bottom, BorderLayout.SOUTH);
+
+        loader = new BackgroundLoader(busy);
+        refresh();
+
+        EventBus.bindChanges(this, "test.changed", this::applyChange); // EDT, every change
+        requeryTimer = new Timer(DBConfig.DASHBOARD_REQUERY_MS, e -> BaseDashboardFrame.requestRefresh(this));
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        requeryTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        requeryTimer.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    public void refresh() {
+        loader.load(Technician_Dashboard_Welcome_Panel::queryCounts, this::applyCounts);
+    }
+
+    /**
+     * Pending, completed and verified counts from test_stats; runs on a
+     * loader thread.
+     */
+    private static int[] queryCounts() {
+        int[] counts = new int[3];
+        try (Connection c = DBConnection.getConnection()) {
+            for (Map.Entry<String, Integer> e : TestStats.counts(c, TestStats.STATUS).entrySet()) {
+                adjust(counts, e.getKey(), e.getValue());
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return counts;
+    }
+
+    private void applyChange(ChangeEvent<TestRecordRow> change) {
+        if (counts == null || loader.isBusy()) {
+            refresh(); // the counts in flight may predate this change
+            return;
+        }
+        int[] updated = counts.clone();
+        if (change.before != null) {
+            adjust(updated, change.before.status, -1);
+        }
+        if (change.after != null) {
+            adjust(updated, change.after.status, 1);
+        }
+        applyCounts(updated);
+    }
+
+    private static void adjust(int[] counts, String status, int delta) {
+        if ("Pending".equalsIgnoreCase(status)) {
+            counts[0] = Math.max(0, counts[0] + delta);
+        } else if ("Completed".equalsIgnoreCase(status)) {
+            counts[1] = Math.max(0, counts[1] + delta);
+        } else if ("Verified".equalsIgnoreCase(status)) {
+            counts[2] = Math.max(0, counts[2] + delta);
+        }
+    }
+
+    private void applyCounts(int[] counts) {
+        this.counts = counts;
+        btnPending.setText("Pending Tests: " + counts[0]);
+        btnCompleted.setText("Completed Tests: " + counts[1]);
+        btnVerified.setText("Verified Tests: " + counts[2]);
+        ds.setValue("Pending", Math.max(1, counts[0]));
+        ds.setValue("Completed", Math.max(1, counts[1]));
+        ds.setValue("Verified", Math.max(1, counts[2]));
+        footer.setText("Loaded.");
     }
 
-    private JComponent createStatusButton(String text, String status) {
+    private JButton createStatusButton(String text, String status) {
         JButton b = new JButton(text);
         b.setBorderPainted(false);
         b.setContentAreaFilled(false);
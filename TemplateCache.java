@@ -0,0 +1,172 @@
+// TemplateCache.java
+// All test templates with their parameters, kept in memory.
+package Main;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Templates change rarely but are read every time a test is created from
+ * one, so TemplateDAO.findById, findByName and listAll are answered from
+ * here. load() reads test_templates and template_parameters with one joined
+ * query (TemplateDAO.loadAllWithParameters); the splash screen runs it at
+ * startup, after DatabaseInit.
+ *
+ * TemplateDAO.insertTemplate, updateTemplate, insertTemplateParameter and
+ * deleteTemplate call invalidate() after they commit; the next lookup loads
+ * the whole set again with the same one query. The query runs outside the
+ * class lock, so invalidate() never waits for a reload, and a load that
+ * started before an invalidate() is not kept. Lookups never query per
+ * template: between loads they only read the in-memory snapshot. A failed
+ * load is thrown to the lookup (for the caller's error message), not turned
+ * into an empty set.
+ *
+ * Lookups return copies, so callers can edit a template (e.g. in the
+ * template form) without changing the cached one.
+ */
+public class TemplateCache {
+
+    /**
+     * One load: templates by id (in name order) and by lower-cased name.
+     */
+    private static class Snapshot {
+
+        final Map<Integer, TestTemplate> byId = new LinkedHashMap<>();
+        final Map<String, TestTemplate> byName = new LinkedHashMap<>();
+    }
+
+    private static final Object LOADING = new Object();
+
+    private static final AtomicLong loads = new AtomicLong();
+    private static final AtomicLong lookups = new AtomicLong();
+
+    private static volatile Snapshot snapshot = null;
+    private static long version = 0; // bumped by invalidate(); guarded by the class lock
+
+    /**
+     * Load every template and its parameters with one query, replacing the
+     * current set.
+     *
+     * @return false if the query failed (the cache stays as it was)
+     */
+    public static boolean load() {
+        try {
+            reload();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error loading template cache: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Query every template and install the result, unless invalidate() ran
+     * while the query did.
+     */
+    private static void reload() throws SQLException {
+        long v;
+        synchronized (TemplateCache.class) {
+            v = version;
+        }
+        loads.incrementAndGet();
+        List<TestTemplate> all = TemplateDAO.loadAllWithParameters();
+        Snapshot s = new Snapshot();
+        for (TestTemplate t : all) {
+            s.byId.put(t.getId(), t);
+            if (t.getName() != null) {
+                s.byName.put(key(t.getName()), t);
+            }
+        }
+        synchronized (TemplateCache.class) {
+            if (version == v) {
+                snapshot = s;
+            }
+        }
+    }
+
+    /**
+     * Drop the loaded set; called by TemplateDAO after a committed write.
+     */
+    static synchronized void invalidate() {
+        version++;
+        snapshot = null;
+    }
+
+    private static Snapshot current() throws SQLException {
+        lookups.incrementAndGet();
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (LOADING) { // one reload for concurrent lookups after a write
+                while ((s = snapshot) == null) {
+                    reload(); // not installed if a write was invalidated meanwhile: load again
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * The template with its parameters (a copy), or null if there is none.
+     */
+    public static TestTemplate get(int templateId) throws SQLException {
+        TestTemplate t = current().byId.get(templateId);
+        return t != null ? copy(t) : null;
+    }
+
+    /**
+     * The template with this name (compared ignoring case, like the
+     * column's collation), or null if there is none.
+     */
+    public static TestTemplate byName(String name) throws SQLException {
+        if (name == null) {
+            return null;
+        }
+        TestTemplate t = current().byName.get(key(name));
+        return t != null ? copy(t) : null;
+    }
+
+    /**
+     * All templates (copies) in name order.
+     */
+    public static List<TestTemplate> all() throws SQLException {
+        List<TestTemplate> list = new ArrayList<>();
+        for (TestTemplate t : current().byId.values()) {
+            list.add(copy(t));
+        }
+        return list;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static TestTemplate copy(TestTemplate t) {
+        TestTemplate c = new TestTemplate(t.getName(), t.getCategory(), t.getDescription());
+        c.setId(t.getId());
+        List<TestParameter> params = new ArrayList<>();
+        for (TestParameter p : t.getParameters() != null ? t.getParameters() : Collections.<TestParameter>emptyList()) {
+            TestParameter q = new TestParameter();
+            q.setId(p.getId());
+            q.setParameterName(p.getParameterName());
+            q.setUnits(p.getUnits());
+            q.setReferenceRange(p.getReferenceRange());
+            q.setCriticalValues(p.getCriticalValues());
+            params.add(q);
+        }
+        c.setParameters(params);
+        return c;
+    }
+
+    public static String summary() {
+        Snapshot s = snapshot;
+        return "template cache: " + (s != null ? s.byId.size() + " templates" : "not loaded") + ", "
+                + lookups.get() + " lookups, " + loads.get() + " loads";
+    }
+}
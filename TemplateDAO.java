@@ -7,6 +7,9 @@ import java.util.List;
 /**
  * FINAL CORRECTED: TemplateDAO (MySQL). Includes methods for insert, update,
  * delete, findById, findByName, listAll, AND insertTemplateParameter.
+ *
+ * Reads are served from TemplateCache (loaded with one joined query); the
+ * writes invalidate it after they commit.
  */
 public class TemplateDAO {
 
@@ -49,6 +52,7 @@ public class TemplateDAO {
                 }
             }
             conn.commit();
+            UnitOfWork.afterCommit(TemplateCache::invalidate);
         } catch (SQLException e) {
             System.err.println("Error inserting template: " + e.getMessage());
             e.printStackTrace();
@@ -75,7 +79,9 @@ public class TemplateDAO {
             ps.setString(3, units);
             ps.setString(4, range);
             ps.setString(5, critical);
-            return ps.executeUpdate() > 0;
+            boolean inserted = ps.executeUpdate() > 0;
+            UnitOfWork.afterCommit(TemplateCache::invalidate);
+            return inserted;
         } catch (SQLException e) {
             System.err.println("Error inserting template parameter for ID " + templateId + ": " + e.getMessage());
             e.printStackTrace();
@@ -85,8 +91,6 @@ public class TemplateDAO {
 
     public boolean updateTemplate(TestTemplate t) {
         String sqlUpdateTmpl = "UPDATE test_templates SET name=?, category=?, description=? WHERE id=?;";
-        String sqlDeleteParams = "DELETE FROM template_parameters WHERE template_id = ?;";
-        String sqlInsertParam = "INSERT INTO template_parameters(template_id, param_name, units, reference_range, critical_values) VALUES (?, ?, ?, ?, ?);";
         Connection conn = null;
         boolean success = false;
         try {
@@ -101,24 +105,11 @@ public class TemplateDAO {
                     throw new SQLException("Updating template failed.");
                 }
             }
-            try (PreparedStatement psDelete = conn.prepareStatement(sqlDeleteParams)) {
-                psDelete.setInt(1, t.getId());
-                psDelete.executeUpdate();
-            }
-            if (t.getParameters() != null && !t.getParameters().isEmpty()) {
-                try (PreparedStatement psInsert = conn.prepareStatement(sqlInsertParam)) {
-                    for (TestParameter p : t.getParameters()) {
-                        psInsert.setInt(1, t.getId());
-                        psInsert.setString(2, p.getParameterName());
-                        psInsert.setString(3, p.getUnits());
-                        psInsert.setString(4, p.getReferenceRange());
-                        psInsert.setString(5, p.getCriticalValues());
-                        psInsert.addBatch();
-                    }
-                    psInsert.executeBatch();
-                }
-            }
+            // only the changed rows are written
+            ParameterRepository.TEMPLATE_PARAMETERS.sync(conn, t.getId(),
+                    t.getParameters() != null ? t.getParameters() : new ArrayList<>());
             conn.commit();
+            UnitOfWork.afterCommit(TemplateCache::invalidate);
             success = true;
         } catch (SQLException e) {
             System.err.println("Error updating template: " + e.getMessage());
@@ -142,7 +133,9 @@ public class TemplateDAO {
         String sql = "DELETE FROM test_templates WHERE id = ?;";
         try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, templateId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            UnitOfWork.afterCommit(TemplateCache::invalidate);
+            return deleted;
         } catch (SQLException e) {
             System.err.println("Error deleting template: " + e.getMessage());
             e.printStackTrace();
@@ -150,98 +143,58 @@ public class TemplateDAO {
         }
     }
 
-    public TestTemplate findById(int templateId) {
-        TestTemplate t = null;
-        String sqlTmpl = "SELECT * FROM test_templates WHERE id = ?;";
-        String sqlParams = "SELECT * FROM template_parameters WHERE template_id = ? ORDER BY id;";
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement psTmpl = conn.prepareStatement(sqlTmpl)) {
-            psTmpl.setInt(1, templateId);
-            try (ResultSet rsTmpl = psTmpl.executeQuery()) {
-                if (rsTmpl.next()) {
-                    t = mapRowToTemplate(rsTmpl);
-                } else {
-                    System.err.println("Template ID not found: " + templateId);
-                    return null;
-                }
-            }
-            List<TestParameter> params = new ArrayList<>();
-            try (PreparedStatement psParams = conn.prepareStatement(sqlParams)) {
-                psParams.setInt(1, templateId);
-                try (ResultSet rsParams = psParams.executeQuery()) {
-                    while (rsParams.next()) {
-                        params.add(mapRowToTemplateParameter(rsParams));
-                    }
-                }
-            }
-            t.setParameters(params);
-        } catch (SQLException e) {
-            System.err.println("Error finding template by ID: " + e.getMessage());
-            e.printStackTrace();
-            t = null;
+    public TestTemplate findById(int templateId) throws SQLException {
+        TestTemplate t = TemplateCache.get(templateId);
+        if (t == null) {
+            System.err.println("Template ID not found: " + templateId);
         }
         return t;
     }
 
-    public List<TestTemplate> listAll() {
+    /**
+     * Templates in name order; their parameters are included.
+     */
+    public List<TestTemplate> listAll() throws SQLException {
+        return TemplateCache.all();
+    }
+
+    public TestTemplate findByName(String name) throws SQLException {
+        return TemplateCache.byName(name);
+    }
+
+    /**
+     * Every template with its parameters, in one query: templates in name
+     * order, each template's parameters in id order. Used by TemplateCache.
+     */
+    static List<TestTemplate> loadAllWithParameters() throws SQLException {
+        String sql = "SELECT t.id, t.name, t.category, t.description, p.id AS param_id, p.param_name, p.units, p.reference_range, p.critical_values"
+                + " FROM test_templates t LEFT JOIN template_parameters p ON p.template_id = t.id ORDER BY t.name, t.id, p.id;";
         List<TestTemplate> list = new ArrayList<>();
-        String sql = "SELECT id, name, category, description FROM test_templates ORDER BY name;";
         try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            TestTemplate t = null;
             while (rs.next()) {
-                list.add(mapRowToTemplate(rs));
-            }
-        } catch (SQLException e) {
-            System.err.println("Error listing templates: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return list;
-    }
-
-    public TestTemplate findByName(String name) {
-        TestTemplate t = null;
-        String sqlTmpl = "SELECT * FROM test_templates WHERE name = ?;";
-        String sqlParams = "SELECT * FROM template_parameters WHERE template_id = ? ORDER BY id;";
-        Connection conn = null;
-        int templateId = -1;
-        try {
-            conn = DBConnection.getConnection();
-            try (PreparedStatement psTmpl = conn.prepareStatement(sqlTmpl)) {
-                psTmpl.setString(1, name);
-                try (ResultSet rsTmpl = psTmpl.executeQuery()) {
-                    if (rsTmpl.next()) {
-                        t = mapRowToTemplate(rsTmpl);
-                        templateId = t.getId();
-                    } else {
-                        return null;
-                    }
+                int id = rs.getInt("id");
+                if (t == null || t.getId() != id) {
+                    t = mapRowToTemplate(rs);
+                    t.setParameters(new ArrayList<>());
+                    list.add(t);
                 }
-            }
-            if (t != null && templateId > 0) {
-                List<TestParameter> params = new ArrayList<>();
-                try (PreparedStatement psParams = conn.prepareStatement(sqlParams)) {
-                    psParams.setInt(1, templateId);
-                    try (ResultSet rsParams = psParams.executeQuery()) {
-                        while (rsParams.next()) {
-                            params.add(mapRowToTemplateParameter(rsParams));
-                        }
-                    }
+                int paramId = rs.getInt("param_id");
+                if (!rs.wasNull()) { // LEFT JOIN: a template without parameters has one row of NULLs
+                    TestParameter p = new TestParameter();
+                    p.setId(paramId);
+                    p.setParameterName(rs.getString("param_name"));
+                    p.setUnits(rs.getString("units"));
+                    p.setReferenceRange(rs.getString("reference_range"));
+                    p.setCriticalValues(rs.getString("critical_values"));
+                    t.getParameters().add(p);
                 }
-                t.setParameters(params);
-                System.out.println("DEBUG (findByName): Found template '" + name + "' with " + params.size() + " parameters.");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error finding template by name: " + e.getMessage());
-            e.printStackTrace();
-            t = null;
-        } finally {
-            if (conn != null) try {
-                conn.close();
-            } catch (SQLException ex) {
             }
         }
-        return t;
+        return list;
     }
 
-    private TestTemplate mapRowToTemplate(ResultSet rs) throws SQLException {
+    private static TestTemplate mapRowToTemplate(ResultSet rs) throws SQLException {
         TestTemplate t = new TestTemplate();
         t.setId(rs.getInt("id"));
         t.setName(rs.getString("name"));
@@ -249,14 +202,4 @@ public class TemplateDAO {
         t.setDescription(rs.getString("description"));
         return t;
     }
-
-    private TestParameter mapRowToTemplateParameter(ResultSet rs) throws SQLException {
-        TestParameter p = new TestParameter();
-        p.setId(rs.getInt("id"));
-        p.setParameterName(rs.getString("param_name"));
-        p.setUnits(rs.getString("units"));
-        p.setReferenceRange(rs.getString("reference_range"));
-        p.setCriticalValues(rs.getString("critical_values"));
-        return p;
-    }
 }
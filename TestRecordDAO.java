@@ -8,26 +8,37 @@ import java.util.List;
 
 public class TestRecordDAO {
 
+    private static final String ROW_SELECT = "SELECT t.test_id, t.patient_id, p.name AS patient_name, t.test_name, t.category, t.status, t.date_conducted, t.technician"
+            + " FROM tests t JOIN patients p ON t.patient_id = p.patient_id";
+
+    // list rows of one patient's tests (tests(patient_id) index); package-private for QueryPlanVerifier
+    static final String PATIENT_ROWS = ROW_SELECT + " WHERE t.patient_id = ?";
+
     public static List<TestRecord> listAll(String statusFilter, String search) {
         List<TestRecord> list = new ArrayList<>();
-        String sql = "SELECT t.* FROM tests t JOIN patients p ON t.patient_id = p.patient_id WHERE 1=1";
-        if (statusFilter != null && !statusFilter.isEmpty()) {
-            sql += " AND t.status = ?";
-        }
-        if (search != null && !search.isEmpty()) {
-            sql += " AND (t.test_id LIKE ? OR p.name LIKE ? OR t.category LIKE ?)";
-        }
-        sql += " ORDER BY t.test_id DESC";
+        String sql = "SELECT t.* FROM tests t JOIN patients p ON t.patient_id = p.patient_id WHERE 1=1"
+                + filterClause(statusFilter, search) + " ORDER BY t.test_id DESC";
         try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            int i = 1;
-            if (statusFilter != null && !statusFilter.isEmpty()) {
-                ps.setString(i++, statusFilter);
-            }
-            if (search != null && !search.isEmpty()) {
-                ps.setString(i++, "%" + search + "%");
-                ps.setString(i++, "%" + search + "%");
-                ps.setString(i++, "%" + search + "%");
+            bindFilters(ps, 1, statusFilter, search);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * All tests of one patient, newest first (uses the tests(patient_id)
+     * index).
+     */
+    public static List<TestRecord> listByPatient(int patientId) {
+        List<TestRecord> list = new ArrayList<>();
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT * FROM tests WHERE patient_id = ? ORDER BY test_id DESC")) {
+            ps.setInt(1, patientId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     list.add(mapRow(rs));
@@ -39,6 +50,121 @@ public class TestRecordDAO {
         return list;
     }
 
+    /**
+     * Same filters as listAll, but returns list rows with the patient name
+     * joined in, so callers need no per-row patient lookup.
+     */
+    public static List<TestRecordRow> listRows(String statusFilter, String search) throws SQLException {
+        return listRowsPage(statusFilter, search, 0, 0);
+    }
+
+    /**
+     * Keyset-paginated listRows: returns up to pageSize rows with test_id
+     * below beforeTestId, newest first. Pass beforeTestId = 0 for the first
+     * page and the last returned test_id for the next one. pageSize 0 means
+     * no limit.
+     */
+    public static List<TestRecordRow> listRowsPage(String statusFilter, String search, int beforeTestId, int pageSize) throws SQLException {
+        List<TestRecordRow> list = new ArrayList<>();
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(pageSql(statusFilter, search, beforeTestId, pageSize))) {
+            bindPage(ps, statusFilter, search, beforeTestId, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapListRow(rs));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Number of tests matching the listAll / listRows filters.
+     */
+    public static int countRows(String statusFilter, String search) throws SQLException {
+        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(countSql(statusFilter, search))) {
+            bindFilters(ps, 1, statusFilter, search);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("c");
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The listRowsPage query; bindPage binds its parameters. Package-private
+     * so QueryPlanVerifier explains exactly what the list runs.
+     */
+    static String pageSql(String statusFilter, String search, int beforeTestId, int pageSize) {
+        return ROW_SELECT + " WHERE 1=1"
+                + filterClause(statusFilter, search)
+                + (beforeTestId > 0 ? " AND t.test_id < ?" : "")
+                + " ORDER BY t.test_id DESC"
+                + (pageSize > 0 ? " LIMIT ?" : "");
+    }
+
+    static void bindPage(PreparedStatement ps, String statusFilter, String search, int beforeTestId, int pageSize) throws SQLException {
+        int i = bindFilters(ps, 1, statusFilter, search);
+        if (beforeTestId > 0) {
+            ps.setInt(i++, beforeTestId);
+        }
+        if (pageSize > 0) {
+            ps.setInt(i++, pageSize);
+        }
+    }
+
+    /**
+     * The countRows query; bindFilters(ps, 1, ...) binds its parameters.
+     */
+    static String countSql(String statusFilter, String search) {
+        return "SELECT COUNT(*) AS c FROM tests t JOIN patients p ON t.patient_id = p.patient_id WHERE 1=1"
+                + filterClause(statusFilter, search);
+    }
+
+    private static String filterClause(String statusFilter, String search) {
+        String sql = "";
+        if (statusFilter != null && !statusFilter.isEmpty()) {
+            sql += " AND t.status = ?";
+        }
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms != null) {
+            if (terms.isId()) {
+                sql += " AND t.test_id = ?";
+            } else if (terms.isFullText()) {
+                sql += " AND (MATCH(t.test_name, t.category) AGAINST (? IN BOOLEAN MODE)"
+                        + " OR t.patient_id IN (SELECT patient_id FROM patients WHERE MATCH(name, contact_number, email) AGAINST (? IN BOOLEAN MODE)))";
+            } else {
+                sql += " AND (p.name LIKE ? OR t.category LIKE ?)";
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Bind the parameters added by filterClause, starting at index i.
+     *
+     * @return next free parameter index
+     */
+    static int bindFilters(PreparedStatement ps, int i, String statusFilter, String search) throws SQLException {
+        if (statusFilter != null && !statusFilter.isEmpty()) {
+            ps.setString(i++, statusFilter);
+        }
+        SearchTerms terms = SearchTerms.parse(search);
+        if (terms != null) {
+            if (terms.isId()) {
+                ps.setInt(i++, terms.getId());
+            } else if (terms.isFullText()) {
+                ps.setString(i++, terms.getBooleanQuery());
+                ps.setString(i++, terms.getBooleanQuery());
+            } else {
+                ps.setString(i++, terms.getPrefixPattern());
+                ps.setString(i++, terms.getPrefixPattern());
+            }
+        }
+        return i;
+    }
+
     public static TestRecord findById(int id) {
         try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT * FROM tests WHERE test_id = ?")) {
             ps.setInt(1, id);
@@ -53,36 +179,108 @@ public class TestRecordDAO {
         return null;
     }
 
+    /**
+     * List row of one test on the given connection, or null. Used for the
+     * before/after snapshots of "test.changed" and the test_stats deltas;
+     * lock holds the row until the transaction ends.
+     */
+    private static TestRecordRow findRow(Connection c, int id, boolean lock) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(ROW_SELECT + " WHERE t.test_id = ?" + (lock ? " FOR UPDATE" : ""))) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapListRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * List rows of all tests of a patient, locked until the transaction ends.
+     * PatientDAO.delete takes them off the counts and posts their
+     * "test.changed" deletes, as ON DELETE CASCADE removes them with the
+     * patient.
+     */
+    static List<TestRecordRow> patientRows(Connection c, int patientId) throws SQLException {
+        List<TestRecordRow> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(PATIENT_ROWS + " FOR UPDATE")) {
+            ps.setInt(1, patientId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapListRow(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Insert or update a test, its test_stats counts and its rollup journal
+     * entries in one transaction,
+     * then post a "test.changed" ChangeEvent with the list rows before and
+     * after the write. The stored parameters are left as they are.
+     *
+     * @return the test_id, or -1 on failure
+     */
     public static int save(TestRecord t) {
+        return save(t, null);
+    }
+
+    /**
+     * Like save(t), and make the stored parameters of the test equal to
+     * params (see ParameterRepository) in the same transaction, so the header
+     * and its parameters are saved together or not at all. params null
+     * leaves them untouched.
+     */
+    public static int save(TestRecord t, List<TestParameter> params) {
         String sql;
         if (t.testId > 0) {
             sql = "UPDATE tests SET patient_id=?, test_name=?, category=?, sample_type=?, date_conducted=?, technician=?, status=?, remarks=?, verification_status=?, priority_level=?, date_verified=? WHERE test_id=?";
         } else {
             sql = "INSERT INTO tests (patient_id, test_name, category, sample_type, date_conducted, technician, status, remarks, verification_status, priority_level, date_verified) VALUES (?,?,?,?,?,?,?,?,?,?,?)";
         }
-        try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, t.patientId);
-            ps.setString(2, t.testName);
-            ps.setString(3, t.category);
-            ps.setString(4, t.sampleType);
-            ps.setString(5, t.dateConducted);
-            ps.setString(6, t.technician);
-            ps.setString(7, t.status);
-            ps.setString(8, t.remarks);
-            ps.setString(9, t.verificationStatus);
-            ps.setString(10, t.priorityLevel);
-            ps.setString(11, t.dateVerified);
-            if (t.testId > 0) {
-                ps.setInt(12, t.testId);
-            }
-            ps.executeUpdate();
-            if (t.testId == 0) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        t.testId = rs.getInt(1);
+        boolean isNew = t.testId <= 0;
+        try (Connection c = DBConnection.getConnection()) {
+            c.setAutoCommit(false);
+            TestRecordRow before;
+            TestRecordRow after;
+            try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                before = isNew ? null : findRow(c, t.testId, true);
+                ps.setInt(1, t.patientId);
+                ps.setString(2, t.testName);
+                ps.setString(3, t.category);
+                ps.setString(4, t.sampleType);
+                ps.setString(5, t.dateConducted);
+                ps.setString(6, t.technician);
+                ps.setString(7, t.status);
+                ps.setString(8, t.remarks);
+                ps.setString(9, t.verificationStatus);
+                ps.setString(10, t.priorityLevel);
+                ps.setString(11, t.dateVerified);
+                if (t.testId > 0) {
+                    ps.setInt(12, t.testId);
+                }
+                ps.executeUpdate();
+                if (isNew) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            t.testId = rs.getInt(1);
+                        }
                     }
                 }
+                if (params != null) {
+                    ParameterRepository.TEST_PARAMETERS.sync(c, t.testId, params);
+                }
+                after = findRow(c, t.testId, false);
+                TestStats.apply(c, before, after);
+                TestRollupEngine.journal(c, before, after);
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                if (isNew) {
+                    t.testId = 0;
+                }
+                throw ex;
             }
+            UnitOfWork.afterCommit(() -> EventBus.postChange("test.changed", isNew ? ChangeEvent.created(t.testId, after) : ChangeEvent.updated(t.testId, before, after)));
             return t.testId;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -92,8 +290,25 @@ public class TestRecordDAO {
 
     public static boolean delete(int id) {
         try (Connection c = DBConnection.getConnection(); PreparedStatement ps = c.prepareStatement("DELETE FROM tests WHERE test_id = ?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+            c.setAutoCommit(false);
+            TestRecordRow before;
+            int deleted;
+            try {
+                before = findRow(c, id, true);
+                ps.setInt(1, id);
+                deleted = ps.executeUpdate();
+                if (deleted > 0) {
+                    TestStats.apply(c, before, null);
+                    TestRollupEngine.journal(c, before, null);
+                }
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+            if (deleted > 0) {
+                UnitOfWork.afterCommit(() -> EventBus.postChange("test.changed", ChangeEvent.deleted(id, before)));
+            }
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -118,6 +333,19 @@ public class TestRecordDAO {
         return t;
     }
 
+    private static TestRecordRow mapListRow(ResultSet rs) {
+        TestRecordRow r = new TestRecordRow();
+        r.testId = safeGetInt(rs, "test_id");
+        r.patientId = safeGetInt(rs, "patient_id");
+        r.patientName = safeGetString(rs, "patient_name");
+        r.testName = safeGetString(rs, "test_name");
+        r.category = safeGetString(rs, "category");
+        r.status = safeGetString(rs, "status");
+        r.dateConducted = safeGetString(rs, "date_conducted");
+        r.technician = safeGetString(rs, "technician");
+        return r;
+    }
+
     private static String safeGetString(ResultSet rs, String col) {
         try {
             return rs.getString(col);
@@ -0,0 +1,67 @@
+// TestRecordListBenchmark.java
+// Regression benchmark for the Test Records list load: counts the SQL
+// statements and time one load takes, for the old per-row patient lookup and
+// for TestRecordDAO.listRows. Exits with status 1 if listRows issues more than
+// one statement per load.
+// Usage:
+//   java -cp ".;libs/*" Main.TestRecordListBenchmark [rounds]
+package Main;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public class TestRecordListBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        DatabaseInit.init();
+
+        // warm up pool and statement caches
+        TestRecordDAO.listRows(null, null);
+
+        long statements = 0;
+        long nanos = 0;
+        int rows = 0;
+        for (int r = 0; r < rounds; r++) {
+            long s0 = statementCount();
+            long t0 = System.nanoTime();
+            List<TestRecord> list = TestRecordDAO.listAll(null, null);
+            for (TestRecord tr : list) {
+                PatientDAO.findById(tr.patientId);
+            }
+            nanos += System.nanoTime() - t0;
+            statements += statementCount() - s0;
+            rows = list.size();
+        }
+        report("listAll + findById per row", rows, statements / rounds, nanos / rounds);
+
+        statements = 0;
+        nanos = 0;
+        for (int r = 0; r < rounds; r++) {
+            long s0 = statementCount();
+            long t0 = System.nanoTime();
+            rows = TestRecordDAO.listRows(null, null).size();
+            nanos += System.nanoTime() - t0;
+            statements += statementCount() - s0;
+        }
+        long perLoad = statements / rounds;
+        report("listRows (joined)", rows, perLoad, nanos / rounds);
+        System.out.println(StatementCache.summary());
+
+        DBConnection.close();
+        if (perLoad > 1) {
+            System.err.println("REGRESSION: listRows issued " + perLoad + " statements per load (expected 1).");
+            System.exit(1);
+        }
+    }
+
+    // every DAO statement goes through the per-connection statement cache
+    private static long statementCount() {
+        return StatementCache.getHits() + StatementCache.getMisses();
+    }
+
+    private static void report(String label, int rows, long statementsPerLoad, long nanosPerLoad) {
+        System.out.printf("%-28s rows=%-7d statements/load=%-7d time/load=%.1f ms%n",
+                label, rows, statementsPerLoad, nanosPerLoad / 1_000_000.0);
+    }
+}
@@ -0,0 +1,21 @@
+// TestRecordRow.java
+// Lean row for the test list tables: test columns plus the joined patient name.
+package Main;
+public class TestRecordRow {
+
+    public int testId;
+    public int patientId;
+    public String patientName;
+    public String testName;
+    public String category;
+    public String status;
+    public String dateConducted;
+    public String technician;
+
+    /**
+     * Patient column text, e.g. "Juan Dela Cruz (ID:12)".
+     */
+    public String patientDisplay() {
+        return patientName != null ? patientName + " (ID:" + patientId + ")" : String.valueOf(patientId);
+    }
+}
@@ -0,0 +1,181 @@
+// TestRecordSaveBenchmark.java
+// Compares the Test Record form save before and after UnitOfWork: the old
+// path (TestRecordDAO.save, then delete-and-reinsert of the parameters on a
+// second connection, audit entry queued) against TestRecordDAO.save(t, params)
+// with the audit entry inside one UnitOfWork. Each round creates a test with
+// PARAMS parameters, then saves it EDITS times with one result changed; the
+// tests are deleted again at the end. Round trips are the server's global
+// Questions counter over each pass (the activity log writer batches of the old
+// path included), read on a separate connection, so run it on an otherwise
+// idle server. Needs at least one patient.
+// Usage:
+//   java -cp ".;libs/*" Main.TestRecordSaveBenchmark [rounds]
+package Main;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestRecordSaveBenchmark {
+
+    private static final int PARAMS = 10;
+    private static final int EDITS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        DatabaseInit.init();
+        int patientId = anyPatient();
+        if (patientId <= 0) {
+            System.err.println("No patients in the database; add one first.");
+            System.exit(1);
+        }
+        List<Integer> created = new ArrayList<>();
+        try (Connection monitor = DriverManager.getConnection(DBConfig.JDBC_URL, DBConfig.MYSQL_USER, DBConfig.MYSQL_PASSWORD)) {
+            // warm up pool, statement caches and the log writer
+            created.add(saveLegacy(newRecord(patientId), parameters(0)));
+            created.add(saveUnitOfWork(newRecord(patientId), parameters(0)));
+
+            for (int pass = 0; pass < 2; pass++) {
+                boolean legacy = pass == 0;
+                long nanos = 0;
+                long statements = 0;
+                long q0 = questions(monitor);
+                for (int r = 0; r < rounds; r++) {
+                    TestRecord t = newRecord(patientId);
+                    for (int e = 0; e <= EDITS; e++) {
+                        List<TestParameter> params = parameters(e);
+                        long s0 = statementCount();
+                        long t0 = System.nanoTime();
+                        int id = legacy ? saveLegacy(t, params) : saveUnitOfWork(t, params);
+                        nanos += System.nanoTime() - t0;
+                        statements += statementCount() - s0;
+                        if (id <= 0) {
+                            System.err.println("Save failed.");
+                            System.exit(1);
+                        }
+                        if (e == 0) {
+                            created.add(id);
+                        }
+                    }
+                }
+                awaitLogWriter();
+                long questions = questions(monitor) - q0 - 1; // minus this SHOW STATUS
+                int saves = rounds * (EDITS + 1);
+                System.out.printf("%-34s saves=%-5d round trips/save=%-6.1f statements/save=%-6.1f time/save=%.1f ms%n",
+                        legacy ? "delete-and-reinsert (before)" : "UnitOfWork + parameter diff", saves,
+                        questions / (double) saves, statements / (double) saves, nanos / (double) saves / 1_000_000.0);
+            }
+        } finally {
+            for (int id : created) {
+                TestRecordDAO.delete(id);
+            }
+            DBConnection.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Test_Record_Form_Panel.save as it was before UnitOfWork.
+     */
+    private static int saveLegacy(TestRecord t, List<TestParameter> params) throws SQLException {
+        int id = TestRecordDAO.save(t);
+        if (id > 0) {
+            try (Connection c = DBConnection.getConnection()) {
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM parameters WHERE test_id = ?")) {
+                    ps.setInt(1, id);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO parameters (test_id, parameter_name, result_value, normal_range, units, interpretation) VALUES (?,?,?,?,?,?)")) {
+                    for (TestParameter p : params) {
+                        ps.setInt(1, id);
+                        ps.setString(2, p.parameterName);
+                        ps.setString(3, p.resultValue);
+                        ps.setString(4, p.normalRange);
+                        ps.setString(5, p.units);
+                        ps.setString(6, p.interpretation);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            ActivityLogDAO.log("benchmark", "Saved", "tests", id, "Test saved with parameters.");
+        }
+        return id;
+    }
+
+    /**
+     * Test_Record_Form_Panel.save as it is now.
+     */
+    private static int saveUnitOfWork(TestRecord t, List<TestParameter> params) throws SQLException {
+        return UnitOfWork.call(uow -> {
+            int saved = TestRecordDAO.save(t, params);
+            if (saved > 0) {
+                ActivityLogDAO.log("benchmark", "Saved", "tests", saved, "Test saved with parameters.");
+            }
+            return saved;
+        });
+    }
+
+    private static TestRecord newRecord(int patientId) {
+        TestRecord t = new TestRecord();
+        t.patientId = patientId;
+        t.testName = "Benchmark panel";
+        t.category = "Hematology";
+        t.sampleType = "Blood";
+        t.dateConducted = LocalDate.now().toString();
+        t.technician = "benchmark";
+        t.status = "Pending";
+        return t;
+    }
+
+    /**
+     * PARAMS parameters; edit n changes the result of parameter n - 1.
+     */
+    private static List<TestParameter> parameters(int edit) {
+        List<TestParameter> list = new ArrayList<>();
+        for (int i = 0; i < PARAMS; i++) {
+            TestParameter p = new TestParameter();
+            p.parameterName = "Param " + i;
+            p.resultValue = (i == edit - 1) ? "edited " + edit : String.valueOf(10 + i);
+            p.normalRange = "5-20";
+            p.units = "mg/dL";
+            p.interpretation = "Normal";
+            list.add(p);
+        }
+        return list;
+    }
+
+    /**
+     * Let the activity log writer insert what the old path queued, so its
+     * round trips are counted.
+     */
+    private static void awaitLogWriter() throws InterruptedException {
+        while (ActivityLogWriter.get().getQueuedCount() > 0) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(1500);
+    }
+
+    private static int anyPatient() throws SQLException {
+        try (Connection c = DBConnection.getConnection(); Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT MIN(patient_id) FROM patients")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static long questions(Connection monitor) throws SQLException {
+        try (Statement s = monitor.createStatement(); ResultSet rs = s.executeQuery("SHOW GLOBAL STATUS LIKE 'Questions'")) {
+            return rs.next() ? rs.getLong(2) : 0;
+        }
+    }
+
+    private static long statementCount() {
+        return StatementCache.getHits() + StatementCache.getMisses();
+    }
+}
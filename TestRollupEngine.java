@@ -0,0 +1,276 @@
+// TestRollupEngine.java
+// Incremental daily aggregation of the tests table for the trend charts.
+package Main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test_daily_rollup holds the number of tests per (day, category, status),
+ * day being date_conducted; tests without a date are not rolled up.
+ *
+ * Writes do not touch the rollup itself. TestRecordDAO and PatientDAO append
+ * the count deltas of each change to the test_day_changes journal in the
+ * same transaction (journal, journalPatientTests), and catchUp() folds the
+ * journal rows after the watermark into the rollup, then deletes them. So a
+ * catch-up costs as much as the changes since the last one, not as much as
+ * the table, and a year of history is a few thousand rollup rows.
+ *
+ * catchUp() runs in one transaction and reads the journal with FOR UPDATE,
+ * so it waits for writers still holding journal rows in its range and two
+ * clients never fold the same rows. rebuild() recomputes everything from
+ * tests for repair (see TestStatsRebuildTool).
+ */
+public class TestRollupEngine {
+
+    private static final String WATERMARK = "test_daily_rollup";
+
+    static void createTables(Statement s) throws SQLException {
+        s.execute("CREATE TABLE IF NOT EXISTS test_day_changes ("
+                + "change_id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + "day DATE NOT NULL,"
+                + "category VARCHAR(100) NOT NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "delta INT NOT NULL"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        s.execute("CREATE TABLE IF NOT EXISTS test_daily_rollup ("
+                + "day DATE NOT NULL,"
+                + "category VARCHAR(100) NOT NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "test_count INT NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY (day, category, status)"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        s.execute("CREATE TABLE IF NOT EXISTS rollup_watermark ("
+                + "name VARCHAR(50) PRIMARY KEY,"
+                + "last_change_id BIGINT NOT NULL DEFAULT 0"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+    }
+
+    /**
+     * Journal one test moving from before to after (either may be null).
+     * Call inside the transaction of the write.
+     */
+    static void journal(Connection c, TestRecordRow before, TestRecordRow after) throws SQLException {
+        String[] from = bucket(before);
+        String[] to = bucket(after);
+        if (from != null && to != null && from[0].equals(to[0]) && from[1].equalsIgnoreCase(to[1]) && from[2].equalsIgnoreCase(to[2])) {
+            return; // same bucket, e.g. only the remarks changed
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO test_day_changes (day, category, status, delta) VALUES (?,?,?,?)")) {
+            if (from != null) {
+                addChange(ps, from, -1);
+            }
+            if (to != null) {
+                addChange(ps, to, 1);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Journal the removal of all tests of a patient, before the patient is
+     * deleted (ON DELETE CASCADE takes the tests with it).
+     */
+    static void journalPatientTests(Connection c, int patientId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO test_day_changes (day, category, status, delta)"
+                + " SELECT date_conducted, COALESCE(category, 'Uncategorized'), COALESCE(status, 'Unknown'), -COUNT(*) FROM tests"
+                + " WHERE patient_id = ? AND date_conducted IS NOT NULL"
+                + " GROUP BY date_conducted, COALESCE(category, 'Uncategorized'), COALESCE(status, 'Unknown')")) {
+            ps.setInt(1, patientId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String[] bucket(TestRecordRow r) {
+        if (r == null || r.dateConducted == null || r.dateConducted.isEmpty()) {
+            return null;
+        }
+        String day = r.dateConducted.length() > 10 ? r.dateConducted.substring(0, 10) : r.dateConducted;
+        return new String[]{day, r.category == null ? "Uncategorized" : r.category, r.status == null ? "Unknown" : r.status};
+    }
+
+    private static void addChange(PreparedStatement ps, String[] bucket, int delta) throws SQLException {
+        ps.setString(1, bucket[0]);
+        ps.setString(2, bucket[1]);
+        ps.setString(3, bucket[2]);
+        ps.setInt(4, delta);
+        ps.addBatch();
+    }
+
+    /**
+     * Fold the journal rows after the watermark into test_daily_rollup.
+     *
+     * @return number of journal rows processed
+     */
+    public static int catchUp() {
+        try (Connection c = DBConnection.getConnection()) {
+            return catchUp(c);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    public static int catchUp(Connection c) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            long watermark = lockWatermark(c);
+            long upTo = watermark;
+            List<Object[]> sums = new ArrayList<>();
+            int rows = 0;
+            // locking read: waits for writers whose journal rows in this range are not committed yet
+            try (PreparedStatement ps = c.prepareStatement("SELECT MAX(change_id), COUNT(*) FROM test_day_changes WHERE change_id > ? FOR UPDATE")) {
+                ps.setLong(1, watermark);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && rs.getLong(2) > 0) {
+                        upTo = rs.getLong(1);
+                        rows = rs.getInt(2);
+                    }
+                }
+            }
+            if (rows == 0) {
+                c.commit();
+                return 0;
+            }
+            try (PreparedStatement ps = c.prepareStatement("SELECT day, category, status, SUM(delta) FROM test_day_changes"
+                    + " WHERE change_id > ? AND change_id <= ? GROUP BY day, category, status")) {
+                ps.setLong(1, watermark);
+                ps.setLong(2, upTo);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getInt(4) != 0) {
+                            sums.add(new Object[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4)});
+                        }
+                    }
+                }
+            }
+            if (!sums.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO test_daily_rollup (day, category, status, test_count) VALUES (?,?,?,?)"
+                        + " ON DUPLICATE KEY UPDATE test_count = test_count + VALUES(test_count)")) {
+                    for (Object[] s : sums) {
+                        ps.setString(1, (String) s[0]);
+                        ps.setString(2, (String) s[1]);
+                        ps.setString(3, (String) s[2]);
+                        ps.setInt(4, (Integer) s[3]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM test_day_changes WHERE change_id > ? AND change_id <= ?")) {
+                ps.setLong(1, watermark);
+                ps.setLong(2, upTo);
+                ps.executeUpdate();
+            }
+            setWatermark(c, upTo);
+            c.commit();
+            return rows;
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Recompute the rollup from tests and empty the journal, in one
+     * transaction.
+     */
+    public static void rebuild(Connection c) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (Statement s = c.createStatement()) {
+            lockWatermark(c);
+            long upTo = 0;
+            try (ResultSet rs = s.executeQuery("SELECT COALESCE(MAX(change_id), 0) FROM test_day_changes FOR UPDATE")) {
+                if (rs.next()) {
+                    upTo = rs.getLong(1);
+                }
+            }
+            s.executeUpdate("DELETE FROM test_day_changes WHERE change_id <= " + upTo);
+            s.executeUpdate("DELETE FROM test_daily_rollup");
+            s.executeUpdate("INSERT INTO test_daily_rollup (day, category, status, test_count)"
+                    + " SELECT date_conducted, COALESCE(category, 'Uncategorized'), COALESCE(status, 'Unknown'), COUNT(*) FROM tests"
+                    + " WHERE date_conducted IS NOT NULL"
+                    + " GROUP BY date_conducted, COALESCE(category, 'Uncategorized'), COALESCE(status, 'Unknown')");
+            setWatermark(c, upTo);
+            c.commit();
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * The watermark row, locked until the transaction ends; created on first
+     * use.
+     */
+    private static long lockWatermark(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT IGNORE INTO rollup_watermark (name, last_change_id) VALUES (?, 0)")) {
+            ps.setString(1, WATERMARK);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement("SELECT last_change_id FROM rollup_watermark WHERE name = ? FOR UPDATE")) {
+            ps.setString(1, WATERMARK);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static void setWatermark(Connection c, long changeId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE rollup_watermark SET last_change_id = ? WHERE name = ?")) {
+            ps.setLong(1, changeId);
+            ps.setString(2, WATERMARK);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * One rollup bucket, for the trend charts.
+     */
+    public static class DayCount {
+
+        public final LocalDate day;
+        public final String category;
+        public final String status;
+        public final int count;
+
+        DayCount(LocalDate day, String category, String status, int count) {
+            this.day = day;
+            this.category = category;
+            this.status = status;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Catch up, then return the non-empty buckets from the given day on.
+     */
+    public static List<DayCount> since(LocalDate from) throws SQLException {
+        List<DayCount> list = new ArrayList<>();
+        try (Connection c = DBConnection.getConnection()) {
+            catchUp(c);
+            try (PreparedStatement ps = c.prepareStatement("SELECT day, category, status, test_count FROM test_daily_rollup"
+                    + " WHERE day >= ? AND test_count > 0 ORDER BY day")) {
+                ps.setDate(1, java.sql.Date.valueOf(from));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(new DayCount(rs.getDate(1).toLocalDate(), rs.getString(2), rs.getString(3), rs.getInt(4)));
+                    }
+                }
+            }
+        }
+        return list;
+    }
+}
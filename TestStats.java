@@ -0,0 +1,188 @@
+// TestStats.java
+// Materialized test counts, kept in step with the tests table on every write.
+package Main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * test_stats holds one row per (dimension, dim_value) with a count, so the
+ * dashboards read a handful of primary-key rows instead of running COUNT /
+ * GROUP BY over tests and patients:
+ *
+ * total      ''            all tests
+ * status     status        null counted as "Unknown"
+ * category   category      null counted as "Uncategorized"
+ * technician technician    null counted as "Unassigned"
+ * day        date_conducted (yyyy-MM-dd), tests without a date are not counted
+ * patients   ''            all patients
+ *
+ * TestRecordDAO and PatientDAO apply their deltas in the same transaction as
+ * the write (apply, removeTests, adjustPatients). rebuild()
+ * recomputes the table from scratch for repair (see TestStatsRebuildTool).
+ * Rows are never deleted by the deltas; readers skip counts of 0.
+ */
+public class TestStats {
+
+    public static final String TOTAL = "total";
+    public static final String STATUS = "status";
+    public static final String CATEGORY = "category";
+    public static final String TECHNICIAN = "technician";
+    public static final String DAY = "day";
+    public static final String PATIENTS = "patients";
+
+    private static final String UPSERT = "INSERT INTO test_stats (dimension, dim_value, test_count) VALUES (?,?,?)"
+            + " ON DUPLICATE KEY UPDATE test_count = test_count + VALUES(test_count)";
+
+    static void createTable(Statement s) throws SQLException {
+        s.execute("CREATE TABLE IF NOT EXISTS test_stats ("
+                + "dimension VARCHAR(20) NOT NULL,"
+                + "dim_value VARCHAR(255) NOT NULL,"
+                + "test_count INT NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY (dimension, dim_value)"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+    }
+
+    /**
+     * Move one test's counts from before to after (either may be null for an
+     * insert or delete). Call inside the transaction of the write.
+     */
+    static void apply(Connection c, TestRecordRow before, TestRecordRow after) throws SQLException {
+        Map<String, Map<String, Integer>> deltas = new LinkedHashMap<>();
+        if (before != null) {
+            addDeltas(deltas, before.status, before.category, before.technician, before.dateConducted, -1);
+        }
+        if (after != null) {
+            addDeltas(deltas, after.status, after.category, after.technician, after.dateConducted, 1);
+        }
+        write(c, deltas);
+    }
+
+    /**
+     * Take these tests off the counts, e.g. the tests of a patient before the
+     * patient (and, by ON DELETE CASCADE, its tests) is deleted; see
+     * TestRecordDAO.patientRows.
+     */
+    static void removeTests(Connection c, List<TestRecordRow> rows) throws SQLException {
+        Map<String, Map<String, Integer>> deltas = new LinkedHashMap<>();
+        for (TestRecordRow r : rows) {
+            addDeltas(deltas, r.status, r.category, r.technician, r.dateConducted, -1);
+        }
+        write(c, deltas);
+    }
+
+    static void adjustPatients(Connection c, int delta) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+            ps.setString(1, PATIENTS);
+            ps.setString(2, "");
+            ps.setInt(3, delta);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void addDeltas(Map<String, Map<String, Integer>> deltas, String status, String category, String technician, String day, int delta) {
+        addDelta(deltas, TOTAL, "", delta);
+        addDelta(deltas, STATUS, status == null ? "Unknown" : status, delta);
+        addDelta(deltas, CATEGORY, category == null ? "Uncategorized" : category, delta);
+        addDelta(deltas, TECHNICIAN, technician == null ? "Unassigned" : technician, delta);
+        if (day != null) {
+            addDelta(deltas, DAY, day.length() > 10 ? day.substring(0, 10) : day, delta);
+        }
+    }
+
+    private static void addDelta(Map<String, Map<String, Integer>> deltas, String dimension, String value, int delta) {
+        // case-insensitive like the primary key collation, so "pending" and "Pending" cancel out
+        deltas.computeIfAbsent(dimension, k -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER)).merge(value, delta, Integer::sum);
+    }
+
+    private static void write(Connection c, Map<String, Map<String, Integer>> deltas) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+            int rows = 0;
+            for (Map.Entry<String, Map<String, Integer>> dim : deltas.entrySet()) {
+                for (Map.Entry<String, Integer> v : dim.getValue().entrySet()) {
+                    if (v.getValue() == 0) {
+                        continue; // unchanged (e.g. the total on an update)
+                    }
+                    ps.setString(1, dim.getKey());
+                    ps.setString(2, v.getKey());
+                    ps.setInt(3, v.getValue());
+                    ps.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Recompute every count from tests and patients in one transaction.
+     */
+    public static void rebuild(Connection c) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("DELETE FROM test_stats");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count) SELECT 'total', '', COUNT(*) FROM tests");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count)"
+                    + " SELECT 'status', COALESCE(status, 'Unknown'), COUNT(*) FROM tests GROUP BY COALESCE(status, 'Unknown')");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count)"
+                    + " SELECT 'category', COALESCE(category, 'Uncategorized'), COUNT(*) FROM tests GROUP BY COALESCE(category, 'Uncategorized')");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count)"
+                    + " SELECT 'technician', COALESCE(technician, 'Unassigned'), COUNT(*) FROM tests GROUP BY COALESCE(technician, 'Unassigned')");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count)"
+                    + " SELECT 'day', DATE_FORMAT(date_conducted, '%Y-%m-%d'), COUNT(*) FROM tests"
+                    + " WHERE date_conducted IS NOT NULL GROUP BY date_conducted");
+            s.executeUpdate("INSERT INTO test_stats (dimension, dim_value, test_count) SELECT 'patients', '', COUNT(*) FROM patients");
+            c.commit();
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * value -> count for one dimension, counts of 0 left out.
+     */
+    public static Map<String, Integer> counts(String dimension) {
+        try (Connection c = DBConnection.getConnection()) {
+            return counts(c, dimension);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static Map<String, Integer> counts(Connection c, String dimension) throws SQLException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT dim_value, test_count FROM test_stats WHERE dimension = ? AND test_count > 0 ORDER BY dim_value")) {
+            ps.setString(1, dimension);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return counts;
+    }
+
+    public static int count(Connection c, String dimension, String value) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT test_count FROM test_stats WHERE dimension = ? AND dim_value = ?")) {
+            ps.setString(1, dimension);
+            ps.setString(2, value);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Math.max(0, rs.getInt(1)) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// TestStatsRebuildTool.java
+// Recomputes the test_stats summary table and the test_daily_rollup trend
+// buckets from tests and patients, e.g. after rows were changed outside the
+// application or the counts drifted.
+// Usage:
+//   java -cp ".;libs/*" Main.TestStatsRebuildTool
+package Main;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class TestStatsRebuildTool {
+
+    public static void main(String[] args) {
+        DatabaseInit.init();
+        int status = 0;
+        try (Connection c = DBConnection.getConnection()) {
+            long start = System.currentTimeMillis();
+            TestStats.rebuild(c);
+            System.out.println("test_stats rebuilt in " + (System.currentTimeMillis() - start) + " ms: "
+                    + TestStats.count(c, TestStats.TOTAL, "") + " tests, "
+                    + TestStats.count(c, TestStats.PATIENTS, "") + " patients.");
+            start = System.currentTimeMillis();
+            TestRollupEngine.rebuild(c);
+            System.out.println("test_daily_rollup rebuilt in " + (System.currentTimeMillis() - start) + " ms.");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        DBConnection.close();
+        System.exit(status);
+    }
+}
@@ -12,7 +12,7 @@ public class Test_Record_Form_Panel extends JPanel {
 
     private JTextField txtTestName, txtDate;
     private JComboBox<String> cmbCategory, cmbSample, cmbStatus;
-    private JComboBox<Integer> cmbPatient;
+    private PatientPicker patientPicker;
     private JTable paramTable;
     private DefaultTableModel paramModel;
     private TestRecord record;
@@ -35,29 +35,12 @@ public class Test_Record_Form_Panel extends JPanel {
         gbc.gridy = 0;
         top.add(new JLabel("Patient"), gbc);
         gbc.gridx = 1;
-        // show patient names in the combo: build model with id values but display names
-        List<Patient> patients = PatientDAO.listAll(null, null);
-        DefaultComboBoxModel<Integer> patientModel = new DefaultComboBoxModel<>();
-        for (Patient p : patients) {
-            patientModel.addElement(p.patientId);
-        }
-        cmbPatient = new JComboBox<>(patientModel);
-        // Render patient name instead of number
-        cmbPatient.setRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-                if (value instanceof Integer) {
-                    Patient p = PatientDAO.findById((Integer) value);
-                    setText(p != null ? p.name + " (ID:" + p.patientId + ")" : "ID: " + value);
-                }
-                return this;
-            }
-        });
+        // type-ahead search instead of loading every patient into a combo
+        patientPicker = new PatientPicker();
         if (record.patientId > 0) {
-            cmbPatient.setSelectedItem(record.patientId);
+            patientPicker.setSelectedPatientId(record.patientId);
         }
-        top.add(cmbPatient, gbc);
+        top.add(patientPicker, gbc);
 
         gbc.gridx = 0;
         gbc.gridy = 1;
@@ -167,41 +150,54 @@ public class Test_Record_Form_Panel extends JPanel {
 }
 
     private void save(String technician) {
-        record.patientId = (Integer) cmbPatient.getSelectedItem();
+        // date_conducted is a DATE column
+        try {
+            java.time.LocalDate.parse(txtDate.getText().trim());
+        } catch (java.time.format.DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Date must be in YYYY-MM-DD format.");
+            return;
+        }
+        if (patientPicker.getSelectedPatientId() <= 0) {
+            JOptionPane.showMessageDialog(this, "Select a patient.");
+            return;
+        }
+        record.patientId = patientPicker.getSelectedPatientId();
         record.testName = txtTestName.getText().trim();
         record.category = (String) cmbCategory.getSelectedItem();
         record.sampleType = (String) cmbSample.getSelectedItem();
         record.dateConducted = txtDate.getText().trim();
         record.technician = technician;
         record.status = (String) cmbStatus.getSelectedItem();
-        int id = TestRecordDAO.save(record);
-        if (id > 0) {
-            try (Connection c = DBConnection.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement("DELETE FROM parameters WHERE test_id = ?")) {
-                    ps.setInt(1, id);
-                    ps.executeUpdate();
-                }
-                String ins = "INSERT INTO parameters (test_id, parameter_name, result_value, normal_range, units, interpretation) VALUES (?,?,?,?,?,?)";
-                try (PreparedStatement ps = c.prepareStatement(ins)) {
-                    for (int i = 0; i < paramModel.getRowCount(); i++) {
-                        ps.setInt(1, id);
-                        ps.setString(2, String.valueOf(paramModel.getValueAt(i, 0)));
-                        ps.setString(3, String.valueOf(paramModel.getValueAt(i, 1)));
-                        ps.setString(4, String.valueOf(paramModel.getValueAt(i, 2)));
-                        ps.setString(5, String.valueOf(paramModel.getValueAt(i, 3)));
-                        ps.setString(6, String.valueOf(paramModel.getValueAt(i, 4)));
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
+        List<TestParameter> params = new java.util.ArrayList<>();
+        for (int i = 0; i < paramModel.getRowCount(); i++) {
+            TestParameter p = new TestParameter();
+            p.parameterName = cell(i, 0);
+            p.resultValue = cell(i, 1);
+            p.normalRange = cell(i, 2);
+            p.units = cell(i, 3);
+            p.interpretation = cell(i, 4);
+            params.add(p);
+        }
+        // header, parameters and audit entry in one transaction; only changed parameter rows are written
+        boolean isNew = record.testId <= 0;
+        int id;
+        try {
+            id = UnitOfWork.call(uow -> {
+                int saved = TestRecordDAO.save(record, params);
+                if (saved > 0) {
+                    ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", "Saved", "tests", saved, "Test saved with parameters.");
                 }
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-            ActivityLogDAO.log(Session.getCurrentUser() != null ? Session.getCurrentUser().username : "system", "Saved", "tests", id, "Test saved with parameters.");
-
-            // new: broadcast an event so dashboards/panels can refresh 
-            EventBus.post("test.saved", id);
-
+                return saved;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            id = -1;
+        }
+        if (id <= 0 && isNew) {
+            record.testId = 0;
+        }
+        if (id > 0) {
+            // TestRecordDAO.save posts test.changed after the commit; dashboards and lists follow it
             JOptionPane.showMessageDialog(this, "Saved");
             if (onSaved != null) {
                 onSaved.run();
@@ -211,4 +207,9 @@ public class Test_Record_Form_Panel extends JPanel {
             JOptionPane.showMessageDialog(this, "Save failed.");
         }
     }
+
+    private String cell(int row, int col) {
+        Object v = paramModel.getValueAt(row, col);
+        return v == null ? null : v.toString();
+    }
 }
@@ -1,21 +1,26 @@
 package Main;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Test_Record_List_Panel now exposes setStatusAndLoad so external callers
  * (dashboard) can request the panel to show tests of a particular status. It
- * also listens to the EventBus "test.saved" to refresh when tests change.
+ * also listens to the EventBus "test.changed" and applies each created,
+ * updated or deleted test to the loaded rows in place.
  */
-public class Test_Record_List_Panel extends JPanel {
+public class Test_Record_List_Panel extends JPanel implements Refreshable {
 
-    private DefaultTableModel model;
+    private PagedTableModel<TestRecordRow> model;
     private JTable table;
+    private JLabel lblCount;
     private JTextField txtSearch;
     private JComboBox<String> cmbStatus;
+    // filter of the rows currently shown (the search box may have been edited since)
+    private String loadedStatus = "";
+    private String loadedSearch = "";
 
     public Test_Record_List_Panel() {
         setLayout(new BorderLayout());
@@ -34,15 +39,18 @@ public class Test_Record_List_Panel extends JPanel {
         top.add(cmbStatus);
         top.add(btnSearch);
         top.add(btnAdd);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        top.add(busy);
         add(top, BorderLayout.NORTH);
 
-        model = new DefaultTableModel(new Object[]{"Test ID", "Patient", "Test Name", "Category", "Status", "Date", "Technician"}, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        model = new PagedTableModel<>(new String[]{"Test ID", "Patient", "Test Name", "Category", "Status", "Date", "Technician"},
+                tr -> tr.testId,
+                tr -> new Object[]{tr.testId, tr.patientDisplay(), tr.testName, tr.category, tr.status, tr.dateConducted, AccountDirectory.displayNameOf(tr.technician)},
+                new BackgroundLoader(busy));
         table = new JTable(model);
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        JScrollPane scroll = new JScrollPane(table);
+        model.attachTo(scroll);
+        add(scroll, BorderLayout.CENTER);
 
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnEdit = new JButton("Edit");
@@ -54,27 +62,64 @@ public class Test_Record_List_Panel extends JPanel {
         bottom.add(btnEdit);
         bottom.add(btnDelete);
         bottom.add(btnView);
+        lblCount = new JLabel();
+        bottom.add(lblCount);
+        model.addTableModelListener(e -> lblCount.setText(model.getStatusText()));
         add(bottom, BorderLayout.SOUTH);
 
-        // Refresh when tests change elsewhere
-        EventBus.addListener("test.saved", (evt, payload) -> SwingUtilities.invokeLater(this::load));
+        // Apply tests changed elsewhere (delivered on the EDT, one event per row)
+        EventBus.bindChanges(this, "test.changed", this::applyChange);
 
         load();
     }
 
     public void load() {
-        model.setRowCount(0);
-        List<TestRecord> list = TestRecordDAO.listAll((String) cmbStatus.getSelectedItem(), txtSearch.getText().trim());
-        for (TestRecord tr : list) {
-            // lookup patient name
-            Patient p = PatientDAO.findById(tr.patientId);
-            String patientDisplay = p != null ? p.name + " (ID:" + p.patientId + ")" : String.valueOf(tr.patientId);
-            model.addRow(new Object[]{tr.testId, patientDisplay, tr.testName, tr.category, tr.status, tr.dateConducted, tr.technician});
+        String status = (String) cmbStatus.getSelectedItem();
+        String search = txtSearch.getText().trim();
+        loadedStatus = status;
+        loadedSearch = search;
+        // patient name comes joined in, no per-row PatientDAO lookup; further pages load on scroll
+        model.reload(PagedTableModel.source(
+                (before, size) -> {
+                    List<TestRecordRow> rows = TestRecordDAO.listRowsPage(status, search, before, size);
+                    AccountDirectory.resolveUsernames(rows.stream().map(tr -> tr.technician).collect(Collectors.toSet())); // technician names, one pass per page
+                    return rows;
+                },
+                () -> TestRecordDAO.countRows(status, search)));
+    }
+
+    @Override
+    public void refresh() {
+        load();
+    }
+
+    /**
+     * Insert, update or remove the one affected row. Text searches are
+     * evaluated by the database (FULLTEXT), so with one active the list is
+     * reloaded instead.
+     */
+    private void applyChange(ChangeEvent<TestRecordRow> change) {
+        SearchTerms terms = SearchTerms.parse(loadedSearch);
+        if (terms != null && !terms.isId()) {
+            BaseDashboardFrame.requestRefresh(this); // reloads when visible
+            return;
+        }
+        if (change.after != null && matchesFilter(change.after, terms)) {
+            model.putRow(change.after);
+        } else if (change.before != null && matchesFilter(change.before, terms)) {
+            model.removeRow(change.id);
+        }
+    }
+
+    private boolean matchesFilter(TestRecordRow r, SearchTerms terms) {
+        if (loadedStatus != null && !loadedStatus.isEmpty() && !loadedStatus.equalsIgnoreCase(r.status)) {
+            return false;
         }
+        return terms == null || terms.getId() == r.testId;
     }
 
     private void openForm(TestRecord t) {
-        Test_Record_Form_Panel f = new Test_Record_Form_Panel(t, this::load);
+        Test_Record_Form_Panel f = new Test_Record_Form_Panel(t, null); // the save arrives as a test.changed event
         JDialog d = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), t == null ? "Add Test" : "Edit Test", true);
         d.getContentPane().add(f);
         d.pack();
@@ -101,9 +146,7 @@ public class Test_Record_List_Panel extends JPanel {
         }
         int id = (int) model.getValueAt(r, 0);
         if (JOptionPane.showConfirmDialog(this, "Delete selected test?") == JOptionPane.YES_OPTION) {
-            TestRecordDAO.delete(id);
-            EventBus.post("test.saved", id); // notify listeners that data changed
-            load();
+            TestRecordDAO.delete(id); // test.changed removes the row here and updates the dashboards
         }
     }
 
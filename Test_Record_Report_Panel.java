@@ -5,6 +5,7 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.print.*;
 import java.io.FileOutputStream;
+import java.util.Collections;
 import java.util.List;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
@@ -28,7 +29,7 @@ public class Test_Record_Report_Panel extends JPanel {
         setBackground(UiTheme.BG);
 
         // Load patient for display (may be null)
-        this.patient = PatientDAO.findById(record.patientId);
+        this.patient = PatientCache.get(record.patientId);
 
         contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
@@ -57,7 +58,11 @@ public class Test_Record_Report_Panel extends JPanel {
         info.add(new JLabel(record.sampleType != null ? record.sampleType : ""));
 
         info.add(new JLabel("Technician:"));
-        info.add(new JLabel(record.technician != null ? record.technician : ""));
+        // memory only; the name is set again once resolved in the background
+        JLabel lblTechnician = new JLabel(AccountDirectory.displayNameOf(record.technician));
+        info.add(lblTechnician);
+        new BackgroundLoader(null).load(() -> AccountDirectory.resolveUsernames(Collections.singleton(record.technician)),
+                resolved -> lblTechnician.setText(AccountDirectory.displayNameOf(record.technician)));
 
         info.add(new JLabel("Date Conducted:"));
         info.add(new JLabel(record.dateConducted != null ? record.dateConducted : ""));
@@ -198,7 +203,7 @@ public class Test_Record_Report_Panel extends JPanel {
             infoTable.addCell(new PdfPCell(new Phrase("Sample Type:", normal)));
             infoTable.addCell(new PdfPCell(new Phrase(record.sampleType != null ? record.sampleType : "", normal)));
             infoTable.addCell(new PdfPCell(new Phrase("Technician:", normal)));
-            infoTable.addCell(new PdfPCell(new Phrase(record.technician != null ? record.technician : "", normal)));
+            infoTable.addCell(new PdfPCell(new Phrase(AccountDirectory.displayNameOf(record.technician), normal)));
             infoTable.addCell(new PdfPCell(new Phrase("Date Conducted:", normal)));
             infoTable.addCell(new PdfPCell(new Phrase(record.dateConducted != null ? record.dateConducted : "", normal)));
             infoTable.addCell(new PdfPCell(new Phrase("Status:", normal)));
@@ -6,7 +6,7 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.List;
+import java.sql.SQLException;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
@@ -22,6 +22,7 @@ public class Test_Template_List_Panel extends JPanel {
     private JLabel lblStatus;
     private JTextField txtSearch;
     private TableRowSorter<DefaultTableModel> sorter;
+    private BackgroundLoader loader;
 
     public Test_Template_List_Panel(BaseDashboardFrame dashboard) {
         super(new BorderLayout(10, 10));
@@ -78,7 +79,13 @@ public class Test_Template_List_Panel extends JPanel {
 
         lblStatus = new JLabel("Loading templates...");
         lblStatus.setFont(UiTheme.NORMAL_FONT);
-        bottomPanel.add(lblStatus, BorderLayout.WEST);
+        JProgressBar busy = BackgroundLoader.createIndicator();
+        loader = new BackgroundLoader(busy);
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        statusPanel.setOpaque(false);
+        statusPanel.add(lblStatus);
+        statusPanel.add(busy);
+        bottomPanel.add(statusPanel, BorderLayout.WEST);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         buttonPanel.setOpaque(false);
@@ -126,30 +133,15 @@ public class Test_Template_List_Panel extends JPanel {
     private void loadTemplates() {
         lblStatus.setText("Loading templates...");
 
-        SwingWorker<List<TestTemplate>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<TestTemplate> doInBackground() throws Exception {
-                return templateDAO.listAll();
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    List<TestTemplate> templates = get();
-                    tableModel.setRowCount(0);
-                    for (TestTemplate t : templates) {
-                        tableModel.addRow(new Object[]{
-                            t.getId(), t.getName(), t.getCategory(), t.getDescription()
-                        });
-                    }
-                    lblStatus.setText(templates.size() + " templates loaded.");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    lblStatus.setText("Error loading templates.");
-                }
+        loader.load(templateDAO::listAll, templates -> {
+            tableModel.setRowCount(0);
+            for (TestTemplate t : templates) {
+                tableModel.addRow(new Object[]{
+                    t.getId(), t.getName(), t.getCategory(), t.getDescription()
+                });
             }
-        };
-        worker.execute();
+            lblStatus.setText(templates.size() + " templates loaded.");
+        }, e -> lblStatus.setText("Error loading templates."));
     }
 
     private TestTemplate getSelectedTemplate() {
@@ -160,7 +152,13 @@ public class Test_Template_List_Panel extends JPanel {
         }
         int modelRow = templateTable.convertRowIndexToModel(viewRow);
         int templateId = (int) tableModel.getValueAt(modelRow, 0);
-        return templateDAO.findById(templateId);
+        try {
+            return templateDAO.findById(templateId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Could not load the template: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
     }
 
     private void editSelectedTemplate() {
@@ -0,0 +1,208 @@
+// UnitOfWork.java
+// One connection and one transaction shared by several DAO calls.
+package Main;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transaction scope for multi-step operations:
+ *
+ * <pre>
+ * int id = UnitOfWork.call(uow -> {
+ *     int saved = TestRecordDAO.save(record, params);
+ *     ActivityLogDAO.log(...);
+ *     return saved;
+ * });
+ * </pre>
+ *
+ * While the work runs, DBConnection.getConnection() on the same thread hands
+ * out the scope's connection, so the static DAO methods join the scope
+ * without changes. On that connection close(), commit() and setAutoCommit()
+ * do nothing, and rollback() marks the scope rollback-only; the scope itself
+ * commits once at the end, or rolls back if the work threw or anything marked
+ * it rollback-only. A call() inside a running scope joins it.
+ *
+ * batch() queues statements that are executed as JDBC batches (one round
+ * trip each with rewriteBatchedStatements) just before the commit; activity
+ * log entries written inside a scope go this way. afterCommit() hooks run
+ * once the transaction is committed, so events such as "test.changed" are not
+ * posted for writes that end up rolled back.
+ */
+public class UnitOfWork {
+
+    public interface Work<T> {
+
+        T run(UnitOfWork uow) throws SQLException;
+    }
+
+    public interface Binder {
+
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Connection connection;
+    private final Connection scoped;
+    private final Map<String, PreparedStatement> batches = new LinkedHashMap<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean rollbackOnly = false;
+
+    private UnitOfWork(Connection connection) {
+        this.connection = connection;
+        this.scoped = (Connection) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "commit":
+                        case "setAutoCommit":
+                            return null; // the scope owns the connection and the transaction
+                        case "getAutoCommit":
+                            return false;
+                        case "rollback":
+                            if (args == null) {
+                                rollbackOnly = true;
+                                return null;
+                            }
+                            break; // rollback(Savepoint) stays within the transaction
+                        case "isClosed":
+                            return connection.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "UnitOfWork[" + connection + "]";
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * The scope running on this thread, or null.
+     */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run work in a scope and commit it; joins the current scope if there is
+     * one. If the work throws, the transaction is rolled back and the
+     * exception rethrown. If it returns normally but the scope was marked
+     * rollback-only (e.g. a DAO rolled back and returned its failure value),
+     * the transaction is rolled back and the work's result returned.
+     */
+    public static <T> T call(Work<T> work) throws SQLException {
+        UnitOfWork outer = CURRENT.get();
+        if (outer != null) {
+            return work.run(outer);
+        }
+        List<Runnable> hooks;
+        T result;
+        try (Connection c = DBConnection.getConnection()) {
+            UnitOfWork uow = new UnitOfWork(c);
+            c.setAutoCommit(false);
+            CURRENT.set(uow);
+            try {
+                result = work.run(uow);
+                if (uow.rollbackOnly) {
+                    c.rollback();
+                    return result;
+                }
+                uow.flush();
+                c.commit();
+            } catch (SQLException | RuntimeException ex) {
+                c.rollback();
+                throw ex;
+            } finally {
+                CURRENT.remove();
+                uow.closeBatches();
+                c.setAutoCommit(true);
+            }
+            hooks = uow.afterCommit;
+        }
+        for (Runnable r : hooks) {
+            try {
+                r.run();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run r after the current scope commits, or right away outside a scope.
+     */
+    public static void afterCommit(Runnable r) {
+        UnitOfWork uow = CURRENT.get();
+        if (uow != null) {
+            uow.afterCommit.add(r);
+        } else {
+            r.run();
+        }
+    }
+
+    /**
+     * The scope's connection (the one DBConnection hands out in the scope).
+     */
+    public Connection getConnection() {
+        return scoped;
+    }
+
+    /**
+     * Add one row to the batch of sql, executed before the commit. Batches
+     * run in the order their statements were first used.
+     */
+    public void batch(String sql, Binder binder) throws SQLException {
+        PreparedStatement ps = batches.get(sql);
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            batches.put(sql, ps);
+        }
+        binder.bind(ps);
+        ps.addBatch();
+    }
+
+    /**
+     * Execute the queued batches now, e.g. before reading rows they insert.
+     */
+    public void flush() throws SQLException {
+        for (PreparedStatement ps : batches.values()) {
+            ps.executeBatch();
+        }
+    }
+
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    private void closeBatches() {
+        for (PreparedStatement ps : batches.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+        batches.clear();
+    }
+}